@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+public class AsyncLogger {
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long RATE_WINDOW_MILLIS = 10000;
+    private static final int RATE_LIMIT_PER_WINDOW = 5;
+    private static AsyncLogger shared;
+    private final Entry[] ring;
+    private final int mask;
+    private final AtomicLong claimed;
+    private final AtomicLong consumed;
+    private final AtomicLong dropped;
+    private final ConcurrentHashMap<String, RateWindow> rateWindows;
+    private final Thread writer;
+    private final AtomicReference<RollingFileSink> pendingSink;
+    private RollingFileSink sink;
+    private volatile Level level;
+    private volatile boolean running;
+    public AsyncLogger(RollingFileSink sink, Level level, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Entry();
+        }
+        this.mask = size - 1;
+        this.claimed = new AtomicLong();
+        this.consumed = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.rateWindows = new ConcurrentHashMap<>();
+        this.pendingSink = new AtomicReference<>();
+        this.sink = sink;
+        this.level = level;
+        this.running = true;
+        this.writer = new Thread(this::drainLoop, "async-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    public static synchronized AsyncLogger get() {
+        if (shared == null) {
+            shared = new AsyncLogger(new RollingFileSink(Paths.get("habit_tracker.log"), 10L * 1024 * 1024, 5),
+                    Level.INFO, DEFAULT_CAPACITY);
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::shutdown, "async-logger-shutdown"));
+        }
+        return shared;
+    }
+    public void configure(Properties props) {
+        level = ConfigProperties.getEnum(props, "log.level", Level.class, level);
+        String file = ConfigProperties.getString(props, "log.file");
+        if (file != null) {
+            RollingFileSink current = pendingSink.get();
+            if (current == null) {
+                current = sink;
+            }
+            long maxBytes = ConfigProperties.getLong(props, "log.max.bytes", 10L * 1024 * 1024);
+            int maxFiles = ConfigProperties.getInt(props, "log.max.files", 5);
+            if (!current.getFile().equals(Paths.get(file)) || current.getMaxBytes() != maxBytes
+                    || current.getMaxFiles() != Math.max(1, maxFiles)) {
+                pendingSink.set(new RollingFileSink(Paths.get(file), maxBytes, maxFiles));
+            }
+        }
+    }
+    public Level getLevel() {
+        return level;
+    }
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    public boolean isEnabled(Level candidate) {
+        return candidate.ordinal() >= level.ordinal();
+    }
+    public void debug(String operation, String message, Object... fields) {
+        log(Level.DEBUG, operation, message, null, fields);
+    }
+    public void info(String operation, String message, Object... fields) {
+        log(Level.INFO, operation, message, null, fields);
+    }
+    public void warn(String operation, String message, Object... fields) {
+        log(Level.WARN, operation, message, null, fields);
+    }
+    public void error(String operation, String message, Throwable error, Object... fields) {
+        log(Level.ERROR, operation, message, error, fields);
+    }
+    public void log(Level eventLevel, String operation, String message, Throwable error, Object... fields) {
+        if (!running || !isEnabled(eventLevel)) {
+            return;
+        }
+        int suppressed = 0;
+        if (eventLevel.ordinal() >= Level.WARN.ordinal()) {
+            suppressed = admit(operation);
+            if (suppressed < 0) {
+                return;
+            }
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= ring.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        Entry entry = ring[(int) (sequence & mask)];
+        entry.timestamp = System.currentTimeMillis();
+        entry.level = eventLevel;
+        entry.thread = Thread.currentThread().getName();
+        entry.operation = operation;
+        entry.message = message;
+        entry.error = error;
+        entry.fields = fields;
+        entry.suppressed = suppressed;
+        entry.published = sequence;
+    }
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    private int admit(String operation) {
+        long now = System.currentTimeMillis();
+        RateWindow window = rateWindows.computeIfAbsent(operation, k -> new RateWindow());
+        synchronized (window) {
+            if (now - window.startedAt >= RATE_WINDOW_MILLIS) {
+                int suppressed = window.suppressed;
+                window.startedAt = now;
+                window.count = 1;
+                window.suppressed = 0;
+                return suppressed;
+            }
+            if (window.count < RATE_LIMIT_PER_WINDOW) {
+                window.count++;
+                return 0;
+            }
+            window.suppressed++;
+            return -1;
+        }
+    }
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        while (true) {
+            swapSink();
+            boolean wrote = false;
+            long next = consumed.get();
+            Entry entry = ring[(int) (next & mask)];
+            while (entry.published == next) {
+                format(entry, line);
+                entry.clear();
+                consumed.lazySet(++next);
+                write(line.toString());
+                wrote = true;
+                entry = ring[(int) (next & mask)];
+            }
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                write(Instant.now() + " WARN  [async-logger] op=logger msg=\"ring buffer full\" dropped=" + (drops - reportedDrops));
+                reportedDrops = drops;
+                wrote = true;
+            }
+            if (wrote) {
+                flush();
+            } else if (!running) {
+                break;
+            } else {
+                LockSupport.parkNanos(1000000L);
+            }
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+    }
+    private void swapSink() {
+        RollingFileSink replacement = pendingSink.getAndSet(null);
+        if (replacement == null) {
+            return;
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+        sink = replacement;
+    }
+    private void write(String text) {
+        try {
+            sink.write(text);
+        } catch (IOException e) {
+            System.err.println(text);
+        }
+    }
+    private void flush() {
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            System.err.println("Error flushing log file: " + e.getMessage());
+        }
+    }
+    private static void format(Entry entry, StringBuilder line) {
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(entry.timestamp)).append(' ');
+        String levelName = entry.level.name();
+        line.append(levelName);
+        for (int i = levelName.length(); i < 6; i++) {
+            line.append(' ');
+        }
+        line.append('[').append(entry.thread).append("] op=").append(entry.operation);
+        line.append(" msg=\"").append(entry.message).append('"');
+        Object[] fields = entry.fields;
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                line.append(' ').append(fields[i]).append('=');
+                Object value = fields[i + 1];
+                if (value instanceof String && ((String) value).indexOf(' ') >= 0) {
+                    line.append('"').append(value).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+        }
+        if (entry.suppressed > 0) {
+            line.append(" suppressed=").append(entry.suppressed);
+        }
+        if (entry.error != null) {
+            line.append(" error=\"").append(entry.error).append('"');
+            if (entry.level == Level.ERROR) {
+                StringWriter trace = new StringWriter();
+                entry.error.printStackTrace(new PrintWriter(trace));
+                line.append(System.lineSeparator()).append(trace.toString().trim());
+            }
+        }
+    }
+    private static class Entry {
+        private volatile long published = -1;
+        private long timestamp;
+        private Level level;
+        private String thread;
+        private String operation;
+        private String message;
+        private Throwable error;
+        private Object[] fields;
+        private int suppressed;
+        private void clear() {
+            thread = null;
+            operation = null;
+            message = null;
+            error = null;
+            fields = null;
+        }
+    }
+    private static class RateWindow {
+        private long startedAt;
+        private int count;
+        private int suppressed;
+    }
+}
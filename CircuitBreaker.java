@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicInteger;
+public class CircuitBreaker {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger consecutiveFailures;
+    private volatile State state;
+    private long nextProbeAt;
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+        this.consecutiveFailures = new AtomicInteger();
+        this.state = State.CLOSED;
+    }
+    public String getName() {
+        return name;
+    }
+    public State getState() {
+        return state;
+    }
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            if (now < nextProbeAt) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            nextProbeAt = now + openMillis;
+            return true;
+        }
+    }
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (state == State.CLOSED) {
+            return;
+        }
+        synchronized (this) {
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                LOG.info("db.circuitBreaker", "Circuit closed, database recovered", "breaker", name);
+            }
+        }
+    }
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+                nextProbeAt = System.currentTimeMillis() + openMillis;
+                LOG.warn("db.circuitBreaker", "Recovery probe failed", "breaker", name, "failures", failures);
+            } else if (state == State.CLOSED && failures >= failureThreshold) {
+                state = State.OPEN;
+                nextProbeAt = System.currentTimeMillis() + openMillis;
+                LOG.warn("db.circuitBreaker", "Circuit opened", "breaker", name, "failures", failures);
+            }
+        }
+    }
+}
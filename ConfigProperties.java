@@ -0,0 +1,60 @@
+import java.util.Properties;
+public class ConfigProperties {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private ConfigProperties() {
+    }
+    public static String getString(Properties props, String key) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim();
+    }
+    public static int getInt(Properties props, String key, int fallback) {
+        String value = getString(props, key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("config.load", "Invalid number, using default", "key", key, "value", value, "default", fallback);
+            return fallback;
+        }
+    }
+    public static long getLong(Properties props, String key, long fallback) {
+        String value = getString(props, key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("config.load", "Invalid number, using default", "key", key, "value", value, "default", fallback);
+            return fallback;
+        }
+    }
+    public static boolean getBoolean(Properties props, String key, boolean fallback) {
+        String value = getString(props, key);
+        if (value == null) {
+            return fallback;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        LOG.warn("config.load", "Invalid boolean, using default", "key", key, "value", value, "default", fallback);
+        return fallback;
+    }
+    public static <E extends Enum<E>> E getEnum(Properties props, String key, Class<E> type, E fallback) {
+        String value = getString(props, key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Enum.valueOf(type, value.replace('-', '_').toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("config.load", "Invalid value, using default", "key", key, "value", value, "default", fallback);
+            return fallback;
+        }
+    }
+}
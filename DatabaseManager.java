@@ -1,19 +1,209 @@
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 public class DatabaseManager {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private interface SqlWork<T> {
+        DbResult<T> run(Connection conn) throws SQLException;
+    }
     private String url;
     private String user;
     private String password;
+    private ReplicaRouter replicaRouter;
+    private CircuitBreaker circuitBreaker;
+    private int queryTimeoutSeconds;
+    private int readRetries;
+    private long retryBackoffMillis;
+    private int streamFetchSize;
+    private SchemaManager.LogPartitioning logPartitioning;
+    private int partitionsAhead;
+    private int retentionPeriods;
+    private boolean archiveOldPartitions;
+    private final SchemaManager schemaManager;
+    private final UsernameIndex usernameIndex;
+    private final PasswordHasher passwordHasher;
+    private volatile boolean usernameUnique;
+    private volatile boolean legacyPasswordHashes;
+    private volatile boolean passwordColumnChecked;
+    private volatile boolean logVersions;
+    private volatile boolean logVersionColumnChecked;
+    private long targetLoginMillis;
+    private boolean fixedHashIterations;
+    private boolean rememberSessions;
+    private final AtomicBoolean indexRebuilding = new AtomicBoolean();
+    private final AtomicBoolean initialized = new AtomicBoolean();
+    private static DatabaseManager shared;
+    private static ScheduledExecutorService maintenanceExecutor;
+    private static ScheduledFuture<?> maintenanceTask;
     public DatabaseManager() {
+        schemaManager = new SchemaManager();
+        usernameIndex = new UsernameIndex();
+        passwordHasher = new PasswordHasher();
         loadConfiguration();
     }
+    public static synchronized DatabaseManager getShared() {
+        if (shared == null) {
+            shared = new DatabaseManager();
+            shared.initializeInBackground();
+        }
+        return shared;
+    }
+    public void initializeInBackground() {
+        if (initialized.get()) {
+            return;
+        }
+        Thread initializer = new Thread(this::initialize, "database-initializer");
+        initializer.setDaemon(true);
+        initializer.start();
+    }
+    public void initialize() {
+        if (!initialized.compareAndSet(false, true)) {
+            return;
+        }
+        DbResult<Boolean> schema = executeWrite("db.ensureUsernameUnique",
+                conn -> DbResult.ok(schemaManager.ensureUsernameUnique(conn)));
+        usernameUnique = schema.getValueOr(false);
+        checkPasswordColumn();
+        checkLogVersionColumn();
+        if (!fixedHashIterations) {
+            passwordHasher.calibrate(targetLoginMillis);
+        }
+        passwordHasher.verifyDummy("");
+        warmUsernameIndex();
+        if (logPartitioning != SchemaManager.LogPartitioning.NONE) {
+            maintainLogPartitions();
+            schedulePartitionMaintenance(this);
+        }
+    }
+    private static synchronized void schedulePartitionMaintenance(DatabaseManager manager) {
+        if (maintenanceExecutor == null) {
+            maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "partition-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel(false);
+        }
+        maintenanceTask = maintenanceExecutor.scheduleAtFixedRate(manager::maintainLogPartitions, 1, 1, TimeUnit.DAYS);
+    }
+    public DbResult<Integer> maintainLogPartitions() {
+        LocalDate today = LocalDate.now();
+        return executeWrite("db.maintainLogPartitions", conn -> {
+            if (!schemaManager.ensureLogPartitions(conn, logPartitioning, partitionsAhead, today)) {
+                return DbResult.ok(0);
+            }
+            if (retentionPeriods <= 0) {
+                return DbResult.ok(0);
+            }
+            LocalDate cutoff = logPartitioning.periodStart(today);
+            for (int i = 0; i < retentionPeriods; i++) {
+                cutoff = logPartitioning == SchemaManager.LogPartitioning.YEAR ? cutoff.minusYears(1) : cutoff.minusMonths(1);
+            }
+            return DbResult.ok(schemaManager.dropLogPartitionsBefore(conn, cutoff, archiveOldPartitions));
+        }, "granularity", logPartitioning);
+    }
+    private synchronized DbResult<Boolean> checkPasswordColumn() {
+        if (passwordColumnChecked) {
+            return DbResult.ok(legacyPasswordHashes);
+        }
+        DbResult<Boolean> passwordColumn = executeWrite("db.ensurePasswordHashCapacity",
+                conn -> DbResult.ok(schemaManager.ensurePasswordHashCapacity(conn)));
+        if (!passwordColumn.isOk()) {
+            return passwordColumn;
+        }
+        legacyPasswordHashes = !passwordColumn.getValue();
+        passwordColumnChecked = true;
+        return DbResult.ok(legacyPasswordHashes);
+    }
+    private synchronized DbResult<Boolean> checkLogVersionColumn() {
+        if (logVersionColumnChecked) {
+            return DbResult.ok(logVersions);
+        }
+        DbResult<Boolean> column = executeWrite("db.ensureLogVersionColumn",
+                conn -> DbResult.ok(schemaManager.ensureLogVersionColumn(conn)));
+        if (!column.isOk()) {
+            return column;
+        }
+        logVersions = column.getValue();
+        logVersionColumnChecked = true;
+        return DbResult.ok(logVersions);
+    }
+    private long bumpLogVersion(Connection conn, int habitId) throws SQLException {
+        if (!logVersions) {
+            return HabitLogBitmap.UNKNOWN_VERSION;
+        }
+        try (PreparedStatement pstmt = prepare(conn, "UPDATE habits SET log_version = log_version + 1 WHERE id = ?")) {
+            pstmt.setInt(1, habitId);
+            pstmt.executeUpdate();
+        }
+        return readLogVersion(conn, habitId);
+    }
+    private long readLogVersion(Connection conn, int habitId) throws SQLException {
+        if (!logVersions) {
+            return HabitLogBitmap.UNKNOWN_VERSION;
+        }
+        try (PreparedStatement pstmt = prepare(conn, "SELECT log_version FROM habits WHERE id = ?")) {
+            pstmt.setInt(1, habitId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : HabitLogBitmap.UNKNOWN_VERSION;
+            }
+        }
+    }
+    public boolean isRememberSessions() {
+        return rememberSessions;
+    }
+    public void setRememberSessions(boolean rememberSessions) {
+        this.rememberSessions = rememberSessions;
+    }
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+    public UsernameIndex getUsernameIndex() {
+        return usernameIndex;
+    }
+    public DbResult<Long> warmUsernameIndex() {
+        return execute("db.warmUsernameIndex", false, null, conn -> {
+            long expected = 0;
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                if (rs.next()) {
+                    expected = rs.getLong(1);
+                }
+            }
+            BloomFilter target = usernameIndex.beginRebuild(expected);
+            long loaded = 0;
+            try (PreparedStatement pstmt = prepare(conn, "SELECT username FROM users")) {
+                pstmt.setFetchSize(1000);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        usernameIndex.addToRebuild(target, rs.getString(1));
+                        loaded++;
+                    }
+                }
+            } catch (SQLException e) {
+                usernameIndex.abortRebuild(target);
+                throw e;
+            }
+            usernameIndex.finishRebuild(target, loaded);
+            LOG.info("db.warmUsernameIndex", "Username index warmed", "users", loaded);
+            return DbResult.ok(loaded);
+        });
+    }
     private void loadConfiguration() {
         Properties props = new Properties();
         FileInputStream fis = null;
@@ -23,10 +213,10 @@ public class DatabaseManager {
             this.url = props.getProperty("db.url");
             this.user = props.getProperty("db.user");
             this.password = props.getProperty("db.password");
-            System.out.println("Database configuration loaded successfully.");
+            LOG.configure(props);
+            LOG.info("config.load", "Database configuration loaded successfully");
         } catch (IOException e) {
-            System.err.println("Error loading config.properties: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("config.load", "Error loading config.properties, using defaults", e);
             this.url = "jdbc:mysql://localhost:3306/habit_tracker";
             this.user = "root";
             this.password = "";
@@ -35,10 +225,56 @@ public class DatabaseManager {
                 try {
                     fis.close();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    LOG.warn("config.load", "Error closing config.properties", "error", e.getMessage());
                 }
             }
         }
+        DriverManager.setLoginTimeout(ConfigProperties.getInt(props, "db.connect.timeout.seconds", 5));
+        this.queryTimeoutSeconds = ConfigProperties.getInt(props, "db.query.timeout.seconds", 10);
+        this.readRetries = ConfigProperties.getInt(props, "db.read.retries", 2);
+        this.retryBackoffMillis = ConfigProperties.getLong(props, "db.retry.backoff.ms", 100);
+        this.logPartitioning = ConfigProperties.getEnum(props, "db.logs.partitioning",
+                SchemaManager.LogPartitioning.class, SchemaManager.LogPartitioning.NONE);
+        this.partitionsAhead = ConfigProperties.getInt(props, "db.logs.partitions.ahead", 3);
+        this.retentionPeriods = ConfigProperties.getInt(props, "db.logs.retention.periods", 0);
+        this.archiveOldPartitions = ConfigProperties.getBoolean(props, "db.logs.archive", true);
+        boolean mysqlWithoutCursor = url != null && url.startsWith("jdbc:mysql:") && !url.contains("useCursorFetch=true");
+        this.streamFetchSize = ConfigProperties.getInt(props, "db.stream.fetch.size", mysqlWithoutCursor ? Integer.MIN_VALUE : 1000);
+        this.circuitBreaker = new CircuitBreaker("primary",
+                ConfigProperties.getInt(props, "db.breaker.failures", 3),
+                ConfigProperties.getLong(props, "db.breaker.open.ms", 15000));
+        this.replicaRouter = createReplicaRouter(props);
+        this.targetLoginMillis = ConfigProperties.getLong(props, "auth.target.login.ms", 150);
+        this.rememberSessions = ConfigProperties.getBoolean(props, "auth.remember.session", false);
+        int iterations = ConfigProperties.getInt(props, "auth.pbkdf2.iterations", 0);
+        this.fixedHashIterations = iterations > 0;
+        if (fixedHashIterations) {
+            passwordHasher.setIterations(iterations);
+        }
+    }
+    private ReplicaRouter createReplicaRouter(Properties props) {
+        String replicaUrls = props.getProperty("db.replica.urls", "").trim();
+        List<String> urls = replicaUrls.isEmpty()
+                ? Collections.<String>emptyList()
+                : Arrays.asList(replicaUrls.split("\\s*,\\s*"));
+        ReplicaRouter router = new ReplicaRouter(urls,
+                props.getProperty("db.replica.user", user),
+                props.getProperty("db.replica.password", password));
+        router.setStrategy(ReplicaRouter.Strategy.fromProperty(props.getProperty("db.replica.strategy")));
+        router.setStickyMillis(ConfigProperties.getLong(props, "db.replica.sticky.ms", 5000));
+        router.setCooldownMillis(ConfigProperties.getLong(props, "db.replica.cooldown.ms", 30000));
+        router.setLagQuery(props.getProperty("db.replica.lag.query"));
+        router.setMaxLagSeconds(ConfigProperties.getLong(props, "db.replica.max.lag.seconds", 10));
+        if (router.hasReplicas()) {
+            LOG.info("config.load", "Read replicas configured", "replicas", urls.size(), "strategy", router.getStrategy());
+        }
+        return router;
+    }
+    public ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
     }
     public String getUrl() {
         return url;
@@ -58,285 +294,491 @@ public class DatabaseManager {
     public void setPassword(String password) {
         this.password = password;
     }
-    private Connection getConnection() {
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(url, user, password);
-        } catch (SQLException e) {
-            System.err.println("Database connection error: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return conn;
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+    public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+    public int getReadRetries() {
+        return readRetries;
+    }
+    public void setReadRetries(int readRetries) {
+        this.readRetries = readRetries;
+    }
+    private Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+    private PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        pstmt.setQueryTimeout(queryTimeoutSeconds);
+        return pstmt;
+    }
+    private PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, autoGeneratedKeys);
+        pstmt.setQueryTimeout(queryTimeoutSeconds);
+        return pstmt;
+    }
+    private static boolean isUnavailable(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || e instanceof SQLTimeoutException
+                || (state != null && state.startsWith("08"));
     }
-    public void logHabit(int habitId, LocalDate date, boolean completed) {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
+    private static Object[] withLatency(Object[] fields, long startedNanos, boolean primary) {
+        Object[] all = Arrays.copyOf(fields, fields.length + 4);
+        all[fields.length] = "latencyMs";
+        all[fields.length + 1] = (System.nanoTime() - startedNanos) / 1000000;
+        all[fields.length + 2] = "target";
+        all[fields.length + 3] = primary ? "primary" : "replica";
+        return all;
+    }
+    private <T> DbResult<T> execute(String operation, boolean read, String stickyKey, SqlWork<T> work, Object... fields) {
+        long startedNanos = System.nanoTime();
+        Connection conn = read ? replicaRouter.openReadConnection(stickyKey) : null;
+        boolean primary = conn == null;
+        if (primary && !circuitBreaker.allowRequest()) {
+            if (LOG.isEnabled(AsyncLogger.Level.DEBUG)) {
+                LOG.debug(operation, "Rejected while circuit is open", withLatency(fields, startedNanos, true));
+            }
+            return DbResult.unavailable("Database unavailable (circuit breaker open)");
+        }
         try {
-            conn = getConnection();
-            if (conn != null) {
-                String checkSql = "SELECT id FROM habit_logs WHERE habit_id = ? AND date = ?";
-                pstmt = conn.prepareStatement(checkSql);
-                pstmt.setInt(1, habitId);
-                pstmt.setDate(2, Date.valueOf(date));
-                ResultSet rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    int logId = rs.getInt("id");
-                    rs.close();
-                    pstmt.close();
-                    String updateSql = "UPDATE habit_logs SET completed = ? WHERE id = ?";
-                    pstmt = conn.prepareStatement(updateSql);
-                    pstmt.setBoolean(1, completed);
-                    pstmt.setInt(2, logId);
-                    pstmt.executeUpdate();
-                } else {
-                    rs.close();
-                    pstmt.close();
-                    String insertSql = "INSERT INTO habit_logs (habit_id, date, completed) VALUES (?, ?, ?)";
-                    pstmt = conn.prepareStatement(insertSql);
-                    pstmt.setInt(1, habitId);
-                    pstmt.setDate(2, Date.valueOf(date));
-                    pstmt.setBoolean(3, completed);
-                    pstmt.executeUpdate();
-                }
+            if (primary) {
+                conn = getConnection();
+            }
+            DbResult<T> result = work.run(conn);
+            if (primary) {
+                circuitBreaker.recordSuccess();
+            }
+            if (LOG.isEnabled(AsyncLogger.Level.DEBUG)) {
+                LOG.debug(operation, String.valueOf(result.getStatus()), withLatency(fields, startedNanos, primary));
             }
+            return result;
         } catch (SQLException e) {
-            System.err.println("Error logging habit: " + e.getMessage());
-            e.printStackTrace();
+            if (!primary) {
+                replicaRouter.markUnavailable(conn);
+                LOG.warn(operation, "Replica call failed, retrying on primary: " + e.getMessage(), withLatency(fields, startedNanos, false));
+            } else if (isUnavailable(e)) {
+                circuitBreaker.recordFailure();
+                LOG.warn(operation, "Database unavailable: " + e.getMessage(), withLatency(fields, startedNanos, true));
+                return DbResult.unavailable(e.getMessage());
+            } else {
+                circuitBreaker.recordSuccess();
+                LOG.error(operation, "Database call failed", e, withLatency(fields, startedNanos, true));
+                return DbResult.error(e.getMessage());
+            }
         } finally {
             try {
-                if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn(operation, "Error closing connection", "error", e.getMessage());
             }
         }
+        return execute(operation, false, stickyKey, work, fields);
     }
-    public void deleteHabitLog(int habitId, LocalDate date) {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        try {
-            conn = getConnection();
-            if (conn != null) {
-                String deleteSql = "DELETE FROM habit_logs WHERE habit_id = ? AND date = ?";
-                pstmt = conn.prepareStatement(deleteSql);
+    private <T> DbResult<T> executeRead(String operation, String stickyKey, SqlWork<T> work, Object... fields) {
+        DbResult<T> result = execute(operation, true, stickyKey, work, fields);
+        for (int attempt = 0; attempt < readRetries && result.getStatus() == DbResult.Status.UNAVAILABLE; attempt++) {
+            if (circuitBreaker.isOpen() && !replicaRouter.hasReplicas()) {
+                break;
+            }
+            long ceiling = retryBackoffMillis << attempt;
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            result = execute(operation, true, stickyKey, work, fields);
+        }
+        return result;
+    }
+    private <T> DbResult<T> executeWrite(String operation, SqlWork<T> work, Object... fields) {
+        return execute(operation, false, null, work, fields);
+    }
+    public DbResult<Long> logHabit(int habitId, LocalDate date, boolean completed) {
+        DbResult<Boolean> logVersionColumn = checkLogVersionColumn();
+        if (!logVersionColumn.isOk()) {
+            return logVersionColumn.asFailure();
+        }
+        return executeWrite("db.logHabit", conn -> {
+            try (PreparedStatement check = prepare(conn, "SELECT id FROM habit_logs WHERE habit_id = ? AND date = ?")) {
+                check.setInt(1, habitId);
+                check.setDate(2, Date.valueOf(date));
+                try (ResultSet rs = check.executeQuery()) {
+                    if (rs.next()) {
+                        int logId = rs.getInt("id");
+                        try (PreparedStatement pstmt = prepare(conn, "UPDATE habit_logs SET completed = ? WHERE id = ?")) {
+                            pstmt.setBoolean(1, completed);
+                            pstmt.setInt(2, logId);
+                            pstmt.executeUpdate();
+                        }
+                    } else {
+                        String insertSql = "INSERT INTO habit_logs (habit_id, date, completed) VALUES (?, ?, ?)";
+                        try (PreparedStatement pstmt = prepare(conn, insertSql)) {
+                            pstmt.setInt(1, habitId);
+                            pstmt.setDate(2, Date.valueOf(date));
+                            pstmt.setBoolean(3, completed);
+                            pstmt.executeUpdate();
+                        }
+                    }
+                }
+            }
+            long version = bumpLogVersion(conn, habitId);
+            replicaRouter.recordWrite("habit:" + habitId);
+            return DbResult.ok(version);
+        }, "habitId", habitId, "date", date);
+    }
+    public DbResult<Long> deleteHabitLog(int habitId, LocalDate date) {
+        DbResult<Boolean> logVersionColumn = checkLogVersionColumn();
+        if (!logVersionColumn.isOk()) {
+            return logVersionColumn.asFailure();
+        }
+        return executeWrite("db.deleteHabitLog", conn -> {
+            try (PreparedStatement pstmt = prepare(conn, "DELETE FROM habit_logs WHERE habit_id = ? AND date = ?")) {
                 pstmt.setInt(1, habitId);
                 pstmt.setDate(2, Date.valueOf(date));
                 pstmt.executeUpdate();
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting habit log: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            long version = bumpLogVersion(conn, habitId);
+            replicaRouter.recordWrite("habit:" + habitId);
+            return DbResult.ok(version);
+        }, "habitId", habitId, "date", date);
+    }
+    public DbResult<HabitLogBitmap> getLogsForHabit(int habitId) {
+        return getLogsForHabit(habitId, null);
+    }
+    public DbResult<HabitLogBitmap> getLogsForHabit(int habitId, LocalDate from) {
+        String sql = "SELECT date, completed FROM habit_logs WHERE habit_id = ?" + (from == null ? "" : " AND date >= ?");
+        return executeRead("db.getLogsForHabit", "habit:" + habitId, conn -> {
+            HabitLogBitmap logs = new HabitLogBitmap(readLogVersion(conn, habitId));
+            if (from != null) {
+                logs.setCoveredFrom(from.toEpochDay());
             }
-        }
+            try (PreparedStatement pstmt = prepare(conn, sql)) {
+                pstmt.setInt(1, habitId);
+                if (from != null) {
+                    pstmt.setDate(2, Date.valueOf(from));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        LocalDate date = rs.getDate("date").toLocalDate();
+                        boolean completed = rs.getBoolean("completed");
+                        logs.put(date, completed);
+                    }
+                }
+            }
+            return DbResult.ok(logs);
+        }, "habitId", habitId, "from", from);
     }
-    public HashMap<LocalDate, Boolean> getLogsForHabit(int habitId) {
-        HashMap<LocalDate, Boolean> logs = new HashMap<>();
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        try {
-            conn = getConnection();
-            if (conn != null) {
-                String sql = "SELECT date, completed FROM habit_logs WHERE habit_id = ?";
-                pstmt = conn.prepareStatement(sql);
+    private PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(streamFetchSize);
+        pstmt.setQueryTimeout(queryTimeoutSeconds);
+        return pstmt;
+    }
+    public DbResult<Long> streamLogsForHabit(int habitId, IHabitLogVisitor visitor) {
+        long[] delivered = {0, Long.MIN_VALUE};
+        return execute("db.streamLogsForHabit", true, "habit:" + habitId, conn -> {
+            String sql = "SELECT EXTRACT(YEAR FROM date), EXTRACT(MONTH FROM date), EXTRACT(DAY FROM date), completed "
+                    + "FROM habit_logs WHERE habit_id = ? ORDER BY date";
+            long resumeAfter = delivered[1];
+            try (PreparedStatement pstmt = prepareStreaming(conn, sql)) {
                 pstmt.setInt(1, habitId);
-                rs = pstmt.executeQuery();
-                while (rs.next()) {
-                    LocalDate date = rs.getDate("date").toLocalDate();
-                    boolean completed = rs.getBoolean("completed");
-                    logs.put(date, completed);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int day = epochDay(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                        if (day <= resumeAfter) {
+                            continue;
+                        }
+                        visitor.onLog(day, rs.getBoolean(4));
+                        delivered[0]++;
+                        delivered[1] = day;
+                    }
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving logs: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            return DbResult.ok(delivered[0]);
+        }, "habitId", habitId);
+    }
+    private static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+    public DbResult<Long> streamLogsForHabit(int habitId, HabitLogBatch batch, IHabitLogBatchHandler handler) {
+        batch.clear();
+        DbResult<Long> result = streamLogsForHabit(habitId, (epochDay, completed) -> {
+            batch.add(epochDay, completed);
+            if (batch.isFull()) {
+                handler.onBatch(batch);
+                batch.clear();
             }
+        });
+        if (result.isOk() && batch.size() > 0) {
+            handler.onBatch(batch);
         }
-        return logs;
+        batch.clear();
+        return result;
     }
-    private String hashPassword(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-    public int registerUser(String name, String username, String email, String password) {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        int userId = -1;
-        try {
-            conn = getConnection();
-            if (conn != null) {
-                String checkSql = "SELECT id FROM users WHERE username = ?";
-                pstmt = conn.prepareStatement(checkSql);
+    public DbResult<Boolean> isUsernameTaken(String username) {
+        if (usernameIndex.isReady() && !usernameIndex.mightExist(username)) {
+            return DbResult.ok(false);
+        }
+        return executeRead("db.isUsernameTaken", "username:" + username, conn -> {
+            try (PreparedStatement pstmt = prepare(conn, "SELECT 1 FROM users WHERE username = ?")) {
                 pstmt.setString(1, username);
-                rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    System.err.println("Username already exists!");
-                    return -1;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return DbResult.ok(rs.next());
                 }
-                rs.close();
-                pstmt.close();
-                String insertSql = "INSERT INTO users (name, username, email, password_hash) VALUES (?, ?, ?, ?)";
-                pstmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+            }
+        }, "username", username);
+    }
+    private static boolean isConstraintViolation(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+    public DbResult<Integer> registerUser(String name, String username, String email, String password) {
+        DbResult<Boolean> legacyColumn = checkPasswordColumn();
+        if (!legacyColumn.isOk()) {
+            return legacyColumn.asFailure();
+        }
+        String passwordHash = legacyColumn.getValue() ? passwordHasher.legacyHash(password) : passwordHasher.hash(password);
+        DbResult<Integer> result = executeWrite("db.registerUser", conn -> {
+            if (!usernameUnique) {
+                try (PreparedStatement check = prepare(conn, "SELECT id FROM users WHERE username = ?")) {
+                    check.setString(1, username);
+                    try (ResultSet rs = check.executeQuery()) {
+                        if (rs.next()) {
+                            LOG.info("db.registerUser", "Username already exists", "username", username);
+                            return DbResult.conflict("Username already exists");
+                        }
+                    }
+                }
+            }
+            String insertSql = "INSERT INTO users (name, username, email, password_hash) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement pstmt = prepare(conn, insertSql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, name);
                 pstmt.setString(2, username);
                 pstmt.setString(3, email);
-                pstmt.setString(4, hashPassword(password));
-                int affectedRows = pstmt.executeUpdate();
+                pstmt.setString(4, passwordHash);
+                int affectedRows;
+                try {
+                    affectedRows = pstmt.executeUpdate();
+                } catch (SQLException e) {
+                    if (isConstraintViolation(e)) {
+                        LOG.info("db.registerUser", "Username already exists", "username", username);
+                        return DbResult.conflict("Username already exists");
+                    }
+                    throw e;
+                }
                 if (affectedRows > 0) {
-                    rs = pstmt.getGeneratedKeys();
-                    if (rs.next()) {
-                        userId = rs.getInt(1);
-                        System.out.println("User registered successfully with ID: " + userId);
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            int userId = rs.getInt(1);
+                            replicaRouter.recordWrite("username:" + username);
+                            LOG.info("db.registerUser", "User registered successfully", "userId", userId, "username", username);
+                            return DbResult.ok(userId);
+                        }
                     }
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error registering user: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            return DbResult.error("User was not created");
+        }, "username", username);
+        if (result.isOk() || result.getStatus() == DbResult.Status.CONFLICT) {
+            usernameIndex.add(username);
+            if (usernameIndex.isSaturated() && indexRebuilding.compareAndSet(false, true)) {
+                Thread rebuilder = new Thread(() -> {
+                    try {
+                        warmUsernameIndex();
+                    } finally {
+                        indexRebuilding.set(false);
+                    }
+                }, "username-index-rebuild");
+                rebuilder.setDaemon(true);
+                rebuilder.start();
             }
         }
-        return userId;
+        return result;
     }
-    public User loginUser(String username, String password) {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        User loggedInUser = null;
-        try {
-            conn = getConnection();
-            if (conn != null) {
-                String sql = "SELECT id, name, username, email, password_hash FROM users WHERE username = ?";
-                pstmt = conn.prepareStatement(sql);
+    public DbResult<User> loginUser(String username, String password) {
+        String[] storedHash = new String[1];
+        DbResult<User> result = executeRead("db.loginUser", "username:" + username, conn -> {
+            String sql = "SELECT id, name, username, email, password_hash FROM users WHERE username = ?";
+            try (PreparedStatement pstmt = prepare(conn, sql)) {
                 pstmt.setString(1, username);
-                rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    String storedHash = rs.getString("password_hash");
-                    String inputHash = hashPassword(password);
-                    if (storedHash.equals(inputHash)) {
-                        int id = rs.getInt("id");
-                        String name = rs.getString("name");
-                        String email = rs.getString("email");
-                        loggedInUser = new User(id, name, username, email);
-                        System.out.println("Login successful for user: " + username);
-                    } else {
-                        System.err.println("Invalid password!");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        LOG.info("db.loginUser", "User not found", "username", username);
+                        return DbResult.notFound("Invalid username or password");
                     }
-                } else {
-                    System.err.println("User not found!");
+                    storedHash[0] = rs.getString("password_hash");
+                    return DbResult.ok(new User(rs.getInt("id"), rs.getString("name"), username, rs.getString("email")));
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error during login: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        }, "username", username);
+        if (!result.isOk()) {
+            if (result.getStatus() == DbResult.Status.NOT_FOUND) {
+                passwordHasher.verifyDummy(password);
             }
+            return result;
+        }
+        if (passwordHasher.isLegacy(storedHash[0])) {
+            passwordHasher.verifyDummy(password);
         }
-        return loggedInUser;
+        if (!passwordHasher.verify(password, storedHash[0])) {
+            LOG.info("db.loginUser", "Invalid password", "username", username);
+            return DbResult.notFound("Invalid username or password");
+        }
+        User loggedInUser = result.getValue();
+        LOG.info("db.loginUser", "Login successful", "userId", loggedInUser.getId(), "username", username);
+        if (passwordColumnChecked && !legacyPasswordHashes && passwordHasher.needsRehash(storedHash[0])) {
+            rehashPassword(loggedInUser.getId(), storedHash[0], password);
+        }
+        return result;
     }
-    public int addHabitForUser(String habitName, int userId) {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        int habitId = -1;
-        try {
-            conn = getConnection();
-            if (conn != null) {
-                String sql = "INSERT INTO habits (name, user_id) VALUES (?, ?)";
-                pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    private void rehashPassword(int userId, String oldHash, String password) {
+        String newHash = passwordHasher.hash(password);
+        DbResult<Integer> updated = executeWrite("db.rehashPassword", conn -> {
+            try (PreparedStatement pstmt = prepare(conn, "UPDATE users SET password_hash = ? WHERE id = ? AND password_hash = ?")) {
+                pstmt.setString(1, newHash);
+                pstmt.setInt(2, userId);
+                pstmt.setString(3, oldHash);
+                return DbResult.ok(pstmt.executeUpdate());
+            }
+        }, "userId", userId);
+        if (updated.isOk() && updated.getValue() > 0) {
+            LOG.info("db.rehashPassword", "Password hash upgraded", "userId", userId);
+            SessionManager.getShared().invalidateUser(userId);
+        }
+    }
+    public DbResult<Integer> addHabitForUser(String habitName, int userId) {
+        return executeWrite("db.addHabitForUser", conn -> {
+            String sql = "INSERT INTO habits (name, user_id) VALUES (?, ?)";
+            try (PreparedStatement pstmt = prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, habitName);
                 pstmt.setInt(2, userId);
-                int affectedRows = pstmt.executeUpdate();
-                if (affectedRows > 0) {
-                    rs = pstmt.getGeneratedKeys();
-                    if (rs.next()) {
-                        habitId = rs.getInt(1);
-                        System.out.println("Habit added successfully with ID: " + habitId);
+                if (pstmt.executeUpdate() > 0) {
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            int habitId = rs.getInt(1);
+                            replicaRouter.recordWrite("user:" + userId);
+                            LOG.info("db.addHabitForUser", "Habit added successfully", "habitId", habitId, "userId", userId);
+                            return DbResult.ok(habitId);
+                        }
                     }
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error adding habit: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            return DbResult.error("Habit was not created");
+        }, "userId", userId);
+    }
+    public DbResult<ArrayList<Habit>> getHabitsForUser(int userId) {
+        return executeRead("db.getHabitsForUser", "user:" + userId, conn -> {
+            ArrayList<Habit> habits = new ArrayList<>();
+            try (PreparedStatement pstmt = prepare(conn, "SELECT id, name FROM habits WHERE user_id = ? ORDER BY name")) {
+                pstmt.setInt(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        habits.add(new Habit(rs.getInt("id"), rs.getString("name")));
+                    }
+                }
             }
+            return DbResult.ok(habits);
+        }, "userId", userId);
+    }
+    public DbResult<LinkedHashMap<Habit, Long>> getHabitVersionsForUser(int userId) {
+        DbResult<Boolean> column = checkLogVersionColumn();
+        if (!column.isOk()) {
+            return column.asFailure();
         }
-        return habitId;
+        String sql = column.getValue()
+                ? "SELECT id, name, log_version FROM habits WHERE user_id = ? ORDER BY name"
+                : "SELECT id, name FROM habits WHERE user_id = ? ORDER BY name";
+        return executeRead("db.getHabitVersionsForUser", "user:" + userId, conn -> {
+            LinkedHashMap<Habit, Long> versions = new LinkedHashMap<>();
+            try (PreparedStatement pstmt = prepare(conn, sql)) {
+                pstmt.setInt(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        versions.put(new Habit(rs.getInt(1), rs.getString(2)),
+                                column.getValue() ? rs.getLong(3) : HabitLogBitmap.UNKNOWN_VERSION);
+                    }
+                }
+            }
+            return DbResult.ok(versions);
+        }, "userId", userId);
     }
-    public ArrayList<Habit> getHabitsForUser(int userId) {
-        ArrayList<Habit> habits = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        try {
-            conn = getConnection();
-            if (conn != null) {
-                String sql = "SELECT id, name FROM habits WHERE user_id = ? ORDER BY name";
-                pstmt = conn.prepareStatement(sql);
+    public DbResult<Habit> getHabitForUser(int userId, int habitId) {
+        return executeRead("db.getHabitForUser", "user:" + userId, conn -> {
+            try (PreparedStatement pstmt = prepare(conn, "SELECT id, name FROM habits WHERE id = ? AND user_id = ?")) {
+                pstmt.setInt(1, habitId);
+                pstmt.setInt(2, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? DbResult.ok(new Habit(rs.getInt("id"), rs.getString("name"))) : DbResult.notFound("Habit not found");
+                }
+            }
+        }, "userId", userId, "habitId", habitId);
+    }
+    public DbResult<Integer> countHabitsForUser(int userId) {
+        return executeRead("db.countHabitsForUser", "user:" + userId, conn -> {
+            try (PreparedStatement pstmt = prepare(conn, "SELECT COUNT(*) FROM habits WHERE user_id = ?")) {
                 pstmt.setInt(1, userId);
-                rs = pstmt.executeQuery();
-                while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String name = rs.getString("name");
-                    habits.add(new Habit(id, name));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return DbResult.ok(rs.next() ? rs.getInt(1) : 0);
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving habits: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        }, "userId", userId);
+    }
+    public DbResult<ArrayList<Habit>> getHabitsForUser(int userId, HabitSort sort, int offset, int limit) {
+        String sql = "SELECT id, name FROM habits WHERE user_id = ? ORDER BY " + sort.getOrderBy() + " LIMIT ? OFFSET ?";
+        return executeRead("db.getHabitsForUserPage", "user:" + userId, conn -> {
+            ArrayList<Habit> habits = new ArrayList<>();
+            try (PreparedStatement pstmt = prepare(conn, sql)) {
+                pstmt.setInt(1, userId);
+                pstmt.setInt(2, limit);
+                pstmt.setInt(3, offset);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        habits.add(new Habit(rs.getInt("id"), rs.getString("name")));
+                    }
+                }
             }
+            return DbResult.ok(habits);
+        }, "userId", userId, "offset", offset, "limit", limit, "sort", sort);
+    }
+    public DbResult<HashMap<Integer, ArrayList<Habit>>> getUnloggedHabitsForUsers(int[] userIds, int offset, int count, LocalDate date) {
+        if (count <= 0) {
+            return DbResult.ok(new HashMap<>());
         }
-        return habits;
+        StringBuilder sql = new StringBuilder(
+                "SELECT h.user_id, h.id, h.name FROM habits h "
+                + "LEFT JOIN habit_logs l ON l.habit_id = h.id AND l.date = ? "
+                + "WHERE l.id IS NULL AND h.user_id IN (");
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ORDER BY h.user_id, h.name");
+        return executeRead("db.getUnloggedHabitsForUsers", null, conn -> {
+            HashMap<Integer, ArrayList<Habit>> pending = new HashMap<>();
+            try (PreparedStatement pstmt = prepare(conn, sql.toString())) {
+                pstmt.setDate(1, Date.valueOf(date));
+                for (int i = 0; i < count; i++) {
+                    pstmt.setInt(i + 2, userIds[offset + i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int userId = rs.getInt("user_id");
+                        pending.computeIfAbsent(userId, k -> new ArrayList<>())
+                                .add(new Habit(rs.getInt("id"), rs.getString("name")));
+                    }
+                }
+            }
+            return DbResult.ok(pending);
+        }, "users", count, "date", date);
     }
 }
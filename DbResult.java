@@ -0,0 +1,57 @@
+public class DbResult<T> {
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        CONFLICT,
+        UNAVAILABLE,
+        ERROR
+    }
+    private final Status status;
+    private final T value;
+    private final String message;
+    private DbResult(Status status, T value, String message) {
+        this.status = status;
+        this.value = value;
+        this.message = message;
+    }
+    public static <T> DbResult<T> ok(T value) {
+        return new DbResult<>(Status.OK, value, null);
+    }
+    public static <T> DbResult<T> notFound(String message) {
+        return new DbResult<>(Status.NOT_FOUND, null, message);
+    }
+    public static <T> DbResult<T> conflict(String message) {
+        return new DbResult<>(Status.CONFLICT, null, message);
+    }
+    public static <T> DbResult<T> unavailable(String message) {
+        return new DbResult<>(Status.UNAVAILABLE, null, message);
+    }
+    public static <T> DbResult<T> error(String message) {
+        return new DbResult<>(Status.ERROR, null, message);
+    }
+    public Status getStatus() {
+        return status;
+    }
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+    public T getValue() {
+        return value;
+    }
+    public T getValueOr(T fallback) {
+        return status == Status.OK ? value : fallback;
+    }
+    public <U> DbResult<U> asFailure() {
+        if (status == Status.OK) {
+            throw new IllegalStateException("Result is not a failure");
+        }
+        return new DbResult<>(status, null, message);
+    }
+    public String getMessage() {
+        return message;
+    }
+    @Override
+    public String toString() {
+        return status == Status.OK ? "OK(" + value + ")" : status + ": " + message;
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+public class FileReminderNotifier implements IReminderNotifier {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private String outputFileName;
+    public FileReminderNotifier(String outputFileName) {
+        this.outputFileName = outputFileName;
+    }
+    public String getOutputFileName() {
+        return outputFileName;
+    }
+    public void setOutputFileName(String outputFileName) {
+        this.outputFileName = outputFileName;
+    }
+    @Override
+    public synchronized void notify(int userId, LocalDate date, List<Habit> pendingHabits) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFileName, true))) {
+            StringBuilder names = new StringBuilder();
+            for (Habit habit : pendingHabits) {
+                if (names.length() > 0) names.append(", ");
+                names.append(habit.getName());
+            }
+            writer.println(LocalDateTime.now() + " user=" + userId + " date=" + date
+                    + " pending=" + pendingHabits.size() + " habits=[" + names + "]");
+        } catch (IOException e) {
+            LOG.error("reminder.notify", "Error writing reminder", e, "userId", userId, "file", outputFileName);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+public class HabitListModel extends AbstractListModel<Habit> implements ComboBoxModel<Habit> {
+    private static final long serialVersionUID = 1L;
+    public interface PageSource {
+        int count();
+        List<Habit> page(int offset, int limit);
+        Habit find(int habitId);
+        boolean isInMemory();
+    }
+    private final int pageSize;
+    private PageSource source;
+    private Habit[] habits;
+    private boolean[] loadedPages;
+    private int total;
+    private HabitSearchIndex searchIndex;
+    private String filter;
+    private int[] filtered;
+    private Object selectedItem;
+    public HabitListModel(int pageSize) {
+        this.pageSize = pageSize;
+        this.habits = new Habit[0];
+        this.loadedPages = new boolean[0];
+        this.filter = "";
+    }
+    public static PageSource listSource(List<Habit> list) {
+        return new PageSource() {
+            @Override
+            public int count() {
+                return list.size();
+            }
+            @Override
+            public List<Habit> page(int offset, int limit) {
+                return list.subList(offset, Math.min(list.size(), offset + limit));
+            }
+            @Override
+            public Habit find(int habitId) {
+                for (Habit habit : list) {
+                    if (habit.getId() == habitId) {
+                        return habit;
+                    }
+                }
+                return null;
+            }
+            @Override
+            public boolean isInMemory() {
+                return true;
+            }
+        };
+    }
+    public void setSource(PageSource newSource) {
+        int oldSize = getSize();
+        source = newSource;
+        total = Math.max(0, newSource.count());
+        habits = new Habit[total];
+        loadedPages = new boolean[(total + pageSize - 1) / pageSize];
+        searchIndex = null;
+        filtered = null;
+        if (!filter.isEmpty()) {
+            applyFilter(filter, null);
+        }
+        int newSize = getSize();
+        if (oldSize > newSize) {
+            fireIntervalRemoved(this, newSize, oldSize - 1);
+        }
+        if (Math.min(oldSize, newSize) > 0) {
+            fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+        }
+        if (newSize > oldSize) {
+            fireIntervalAdded(this, oldSize, newSize - 1);
+        }
+    }
+    public int getTotalSize() {
+        return total;
+    }
+    public String getFilter() {
+        return filter;
+    }
+    public void setFilter(String query) {
+        String next = query == null ? "" : query.trim();
+        if (next.equalsIgnoreCase(filter)) {
+            return;
+        }
+        int oldSize = getSize();
+        int[] candidates = !filter.isEmpty() && filtered != null
+                && next.toLowerCase().contains(filter.toLowerCase()) ? filtered : null;
+        filter = next;
+        if (next.isEmpty()) {
+            filtered = null;
+        } else {
+            applyFilter(next, candidates);
+        }
+        int newSize = getSize();
+        if (oldSize > newSize) {
+            fireIntervalRemoved(this, newSize, oldSize - 1);
+        }
+        if (Math.min(oldSize, newSize) > 0) {
+            fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+        }
+        if (newSize > oldSize) {
+            fireIntervalAdded(this, oldSize, newSize - 1);
+        }
+    }
+    public List<Habit> getAllHabits() {
+        for (int page = 0; page < loadedPages.length; page++) {
+            loadPage(page);
+        }
+        ArrayList<Habit> all = new ArrayList<>(total);
+        for (Habit habit : habits) {
+            if (habit != null) {
+                all.add(habit);
+            }
+        }
+        return all;
+    }
+    public List<Habit> getLoadedHabits() {
+        if (source != null && source.isInMemory()) {
+            return getAllHabits();
+        }
+        ArrayList<Habit> loaded = new ArrayList<>();
+        for (Habit habit : habits) {
+            if (habit != null) {
+                loaded.add(habit);
+            }
+        }
+        return loaded;
+    }
+    public boolean isFullyLoaded() {
+        for (boolean loaded : loadedPages) {
+            if (!loaded) {
+                return false;
+            }
+        }
+        return true;
+    }
+    public Habit findById(int habitId) {
+        for (Habit habit : habits) {
+            if (habit != null && habit.getId() == habitId) {
+                return habit;
+            }
+        }
+        return source == null ? null : source.find(habitId);
+    }
+    @Override
+    public int getSize() {
+        return filtered != null ? filtered.length : total;
+    }
+    @Override
+    public Habit getElementAt(int index) {
+        int position = filtered != null ? filtered[index] : index;
+        if (habits[position] == null) {
+            loadPage(position / pageSize);
+        }
+        return habits[position];
+    }
+    @Override
+    public void setSelectedItem(Object item) {
+        if ((selectedItem != null && !selectedItem.equals(item)) || (selectedItem == null && item != null)) {
+            selectedItem = item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+    @Override
+    public Object getSelectedItem() {
+        return selectedItem;
+    }
+    private void applyFilter(String query, int[] candidates) {
+        HabitSearchIndex index = searchIndex;
+        if (index == null) {
+            getAllHabits();
+            index = new HabitSearchIndex(Arrays.asList(habits));
+            if (isFullyLoaded()) {
+                searchIndex = index;
+            }
+        }
+        filtered = index.search(query, candidates);
+    }
+    private void loadPage(int page) {
+        if (loadedPages[page]) {
+            return;
+        }
+        int offset = page * pageSize;
+        List<Habit> rows = source.page(offset, pageSize);
+        for (int i = 0; i < rows.size() && offset + i < total; i++) {
+            habits[offset + i] = rows.get(i);
+        }
+        loadedPages[page] = !rows.isEmpty();
+    }
+}
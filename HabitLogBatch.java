@@ -0,0 +1,35 @@
+public class HabitLogBatch {
+    private final int[] epochDays;
+    private final boolean[] completed;
+    private int size;
+    public HabitLogBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.epochDays = new int[capacity];
+        this.completed = new boolean[capacity];
+    }
+    public int getCapacity() {
+        return epochDays.length;
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isFull() {
+        return size == epochDays.length;
+    }
+    public int getEpochDay(int index) {
+        return epochDays[index];
+    }
+    public boolean isCompleted(int index) {
+        return completed[index];
+    }
+    void add(int epochDay, boolean isCompleted) {
+        epochDays[size] = epochDay;
+        completed[size] = isCompleted;
+        size++;
+    }
+    void clear() {
+        size = 0;
+    }
+}
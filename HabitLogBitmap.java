@@ -0,0 +1,127 @@
+import java.time.LocalDate;
+public class HabitLogBitmap {
+    public static final long UNKNOWN_VERSION = -1;
+    public static final long COMPLETE = Long.MIN_VALUE;
+    private static final long[] NO_WORDS = new long[0];
+    private int baseDay;
+    private long[] logged;
+    private long[] completed;
+    private int size;
+    private long version;
+    private long coveredFrom = COMPLETE;
+    public HabitLogBitmap() {
+        this(UNKNOWN_VERSION);
+    }
+    public HabitLogBitmap(long version) {
+        this.logged = NO_WORDS;
+        this.completed = NO_WORDS;
+        this.version = version;
+    }
+    public HabitLogBitmap(int baseDay, long[] logged, long[] completed, long version) {
+        this.baseDay = baseDay;
+        this.logged = logged.clone();
+        this.completed = completed.clone();
+        this.version = version;
+        for (int w = 0; w < this.logged.length; w++) {
+            this.completed[w] &= this.logged[w];
+            size += Long.bitCount(this.logged[w]);
+        }
+    }
+    public HabitLogBitmap copy() {
+        HabitLogBitmap copy = new HabitLogBitmap();
+        copy.baseDay = baseDay;
+        copy.logged = logged.clone();
+        copy.completed = completed.clone();
+        copy.size = size;
+        copy.version = version;
+        copy.coveredFrom = coveredFrom;
+        return copy;
+    }
+    public int size() {
+        return size;
+    }
+    public long getVersion() {
+        return version;
+    }
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    public long getCoveredFrom() {
+        return coveredFrom;
+    }
+    public void setCoveredFrom(long coveredFrom) {
+        this.coveredFrom = coveredFrom;
+    }
+    public boolean covers(LocalDate date) {
+        return coveredFrom <= date.toEpochDay();
+    }
+    public int getBaseDay() {
+        return baseDay;
+    }
+    public int getWordCount() {
+        return logged.length;
+    }
+    public long getLoggedWord(int index) {
+        return logged[index];
+    }
+    public long getCompletedWord(int index) {
+        return completed[index];
+    }
+    public Boolean get(LocalDate date) {
+        long index = date.toEpochDay() - baseDay;
+        if (index < 0 || index >= (long) logged.length << 6) {
+            return null;
+        }
+        int word = (int) (index >>> 6);
+        long bit = 1L << index;
+        return (logged[word] & bit) == 0 ? null : (completed[word] & bit) != 0;
+    }
+    public void put(LocalDate date, boolean done) {
+        int day = (int) date.toEpochDay();
+        ensureCovers(day);
+        int index = day - baseDay;
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if ((logged[word] & bit) == 0) {
+            logged[word] |= bit;
+            size++;
+        }
+        if (done) {
+            completed[word] |= bit;
+        } else {
+            completed[word] &= ~bit;
+        }
+    }
+    public void remove(LocalDate date) {
+        if (get(date) == null) {
+            return;
+        }
+        int index = (int) (date.toEpochDay() - baseDay);
+        long bit = 1L << index;
+        logged[index >>> 6] &= ~bit;
+        completed[index >>> 6] &= ~bit;
+        size--;
+    }
+    private void ensureCovers(int day) {
+        int dayWord = Math.floorDiv(day, 64);
+        if (logged.length == 0) {
+            baseDay = dayWord << 6;
+            logged = new long[1];
+            completed = new long[1];
+            return;
+        }
+        int firstWord = Math.min(baseDay >> 6, dayWord);
+        int endWord = Math.max((baseDay >> 6) + logged.length, dayWord + 1);
+        if (firstWord == baseDay >> 6 && endWord == (baseDay >> 6) + logged.length) {
+            return;
+        }
+        long[] newLogged = new long[endWord - firstWord];
+        long[] newCompleted = new long[endWord - firstWord];
+        int shift = (baseDay >> 6) - firstWord;
+        System.arraycopy(logged, 0, newLogged, shift, logged.length);
+        System.arraycopy(completed, 0, newCompleted, shift, completed.length);
+        baseDay = firstWord << 6;
+        logged = newLogged;
+        completed = newCompleted;
+    }
+}
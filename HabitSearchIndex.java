@@ -0,0 +1,111 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+public class HabitSearchIndex {
+    private static final int GRAM = 3;
+    private final String[] names;
+    private final HashMap<String, int[]> postings;
+    public HabitSearchIndex(List<Habit> habits) {
+        int count = habits.size();
+        this.names = new String[count];
+        for (int i = 0; i < count; i++) {
+            Habit habit = habits.get(i);
+            names[i] = habit == null ? "" : normalize(habit.getName());
+        }
+        HashMap<String, int[]> building = new HashMap<>();
+        HashMap<String, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = names[i];
+            for (int j = 0; j + GRAM <= name.length(); j++) {
+                String gram = name.substring(j, j + GRAM);
+                int[] list = building.get(gram);
+                int size = sizes.getOrDefault(gram, 0);
+                if (list == null) {
+                    list = new int[4];
+                } else if (size > 0 && list[size - 1] == i) {
+                    continue;
+                } else if (size == list.length) {
+                    list = Arrays.copyOf(list, size * 2);
+                }
+                list[size] = i;
+                building.put(gram, list);
+                sizes.put(gram, size + 1);
+            }
+        }
+        this.postings = new HashMap<>();
+        for (String gram : building.keySet()) {
+            postings.put(gram, Arrays.copyOf(building.get(gram), sizes.get(gram)));
+        }
+    }
+    public int size() {
+        return names.length;
+    }
+    public int[] search(String query) {
+        return search(query, null);
+    }
+    public int[] search(String query, int[] candidates) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            int[] all = new int[names.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        if (candidates == null && needle.length() >= GRAM) {
+            candidates = gramCandidates(needle);
+        }
+        int[] matches = new int[candidates == null ? names.length : candidates.length];
+        int found = 0;
+        if (candidates == null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].contains(needle)) {
+                    matches[found++] = i;
+                }
+            }
+        } else {
+            for (int index : candidates) {
+                if (names[index].contains(needle)) {
+                    matches[found++] = index;
+                }
+            }
+        }
+        return Arrays.copyOf(matches, found);
+    }
+    private int[] gramCandidates(String needle) {
+        int[] result = null;
+        for (int j = 0; j + GRAM <= needle.length(); j++) {
+            int[] list = postings.get(needle.substring(j, j + GRAM));
+            if (list == null) {
+                return new int[0];
+            }
+            result = result == null ? list : intersect(result, list);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
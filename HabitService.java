@@ -0,0 +1,251 @@
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+public class HabitService {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+    private static final IdentityHashMap<DatabaseManager, HabitService> shared = new IdentityHashMap<>();
+    private final DatabaseManager dbManager;
+    private final ConcurrentHashMap<Integer, UserState> users;
+    private final StampedLock[] stripes;
+    private final int stripeMask;
+    public HabitService(DatabaseManager dbManager) {
+        this(dbManager, Runtime.getRuntime().availableProcessors() * 4);
+    }
+    public HabitService(DatabaseManager dbManager, int stripeCount) {
+        this.dbManager = dbManager;
+        this.users = new ConcurrentHashMap<>();
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new StampedLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new StampedLock();
+        }
+        this.stripeMask = size - 1;
+    }
+    public static synchronized HabitService getShared(DatabaseManager dbManager) {
+        return shared.computeIfAbsent(dbManager, HabitService::new);
+    }
+    public DatabaseManager getDatabaseManager() {
+        return dbManager;
+    }
+    public int getStripeCount() {
+        return stripes.length;
+    }
+    public int getUserCount() {
+        return users.size();
+    }
+    public void acquire(int userId) {
+        users.compute(userId, (id, state) -> {
+            UserState current = state == null ? new UserState() : state;
+            current.references++;
+            return current;
+        });
+    }
+    public void release(int userId) {
+        users.computeIfPresent(userId, (id, state) -> --state.references > 0 ? state : null);
+    }
+    public boolean hasLogs(int userId, int habitId) {
+        UserState state = users.get(userId);
+        if (state == null) {
+            return false;
+        }
+        StampedLock stripe = stripeFor(habitId);
+        long stamp = stripe.readLock();
+        try {
+            HabitLogs entry = state.habits.get(habitId);
+            return entry != null && entry.logs != null;
+        } finally {
+            stripe.unlockRead(stamp);
+        }
+    }
+    public boolean seedLogs(int userId, int habitId, HabitLogBitmap logs) {
+        UserState state = users.get(userId);
+        if (state == null) {
+            return false;
+        }
+        StampedLock stripe = stripeFor(habitId);
+        long stamp = stripe.writeLock();
+        try {
+            HabitLogs entry = state.habits.computeIfAbsent(habitId, id -> new HabitLogs());
+            if (entry.logs != null || entry.inFlight > 0) {
+                return false;
+            }
+            entry.logs = logs.copy();
+            return true;
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+    public DbResult<HabitLogBitmap> getLogs(int userId, int habitId, LocalDate from) {
+        long fromDay = from == null ? HabitLogBitmap.COMPLETE : from.toEpochDay();
+        UserState state = state(userId);
+        StampedLock stripe = stripeFor(habitId);
+        DbResult<HabitLogBitmap> result = null;
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            long version;
+            long stamp = stripe.writeLock();
+            try {
+                HabitLogs entry = state.habits.computeIfAbsent(habitId, id -> new HabitLogs());
+                if (entry.logs != null && entry.logs.getCoveredFrom() <= fromDay) {
+                    return DbResult.ok(entry.logs.copy());
+                }
+                version = entry.version;
+            } finally {
+                stripe.unlockWrite(stamp);
+            }
+            result = dbManager.getLogsForHabit(habitId, from);
+            if (!result.isOk()) {
+                return result;
+            }
+            stamp = stripe.writeLock();
+            try {
+                HabitLogs entry = state.habits.computeIfAbsent(habitId, id -> new HabitLogs());
+                if (entry.logs != null && entry.logs.getCoveredFrom() <= fromDay) {
+                    return DbResult.ok(entry.logs.copy());
+                }
+                if (entry.version == version && entry.inFlight == 0) {
+                    entry.logs = result.getValue();
+                    return DbResult.ok(entry.logs.copy());
+                }
+            } finally {
+                stripe.unlockWrite(stamp);
+            }
+        }
+        return DbResult.ok(result.getValue().copy());
+    }
+    public Boolean getStatus(int userId, int habitId, LocalDate date) {
+        UserState state = users.get(userId);
+        if (state == null) {
+            return null;
+        }
+        StampedLock stripe = stripeFor(habitId);
+        long stamp = stripe.readLock();
+        try {
+            HabitLogs entry = state.habits.get(habitId);
+            return entry == null || entry.logs == null ? null : entry.logs.get(date);
+        } finally {
+            stripe.unlockRead(stamp);
+        }
+    }
+    public DbResult<Void> logHabit(int userId, int habitId, LocalDate date, boolean completed) {
+        return update(userId, habitId, date, completed);
+    }
+    public DbResult<Void> deleteLog(int userId, int habitId, LocalDate date) {
+        return update(userId, habitId, date, null);
+    }
+    public HashMap<Integer, HabitLogBitmap> copyLoadedLogs(int userId) {
+        HashMap<Integer, HabitLogBitmap> copies = new HashMap<>();
+        UserState state = users.get(userId);
+        if (state == null) {
+            return copies;
+        }
+        for (Map.Entry<Integer, HabitLogs> habit : state.habits.entrySet()) {
+            StampedLock stripe = stripeFor(habit.getKey());
+            long stamp = stripe.readLock();
+            try {
+                HabitLogs entry = habit.getValue();
+                boolean usable = entry.logs != null && entry.inFlight == 0;
+                copies.put(habit.getKey(), usable ? entry.logs.copy() : null);
+            } finally {
+                stripe.unlockRead(stamp);
+            }
+        }
+        return copies;
+    }
+    public HashSet<Integer> invalidateStale(int userId, Map<Integer, Long> versions) {
+        HashSet<Integer> stale = new HashSet<>();
+        UserState state = users.get(userId);
+        if (state == null) {
+            return stale;
+        }
+        for (Map.Entry<Integer, Long> habit : versions.entrySet()) {
+            StampedLock stripe = stripeFor(habit.getKey());
+            long stamp = stripe.writeLock();
+            try {
+                HabitLogs entry = state.habits.get(habit.getKey());
+                if (entry != null && entry.logs != null && (habit.getValue() == HabitLogBitmap.UNKNOWN_VERSION
+                        || entry.logs.getVersion() != habit.getValue())) {
+                    entry.logs = null;
+                    entry.version++;
+                    stale.add(habit.getKey());
+                }
+            } finally {
+                stripe.unlockWrite(stamp);
+            }
+        }
+        return stale;
+    }
+    private DbResult<Void> update(int userId, int habitId, LocalDate date, Boolean completed) {
+        UserState state = state(userId);
+        StampedLock stripe = stripeFor(habitId);
+        long ticket;
+        long stamp = stripe.writeLock();
+        try {
+            HabitLogs entry = state.habits.computeIfAbsent(habitId, id -> new HabitLogs());
+            ticket = ++entry.version;
+            entry.inFlight++;
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+        DbResult<Long> result;
+        try {
+            result = completed == null
+                    ? dbManager.deleteHabitLog(habitId, date)
+                    : dbManager.logHabit(habitId, date, completed);
+        } catch (RuntimeException e) {
+            finishUpdate(state, habitId, ticket, date, completed, null);
+            throw e;
+        }
+        if (!result.isOk()) {
+            LOG.warn("service.update", "Habit log write failed: " + result.getMessage(), "userId", userId, "habitId", habitId, "date", date);
+            finishUpdate(state, habitId, ticket, date, completed, null);
+            return result.asFailure();
+        }
+        finishUpdate(state, habitId, ticket, date, completed, result.getValue());
+        return DbResult.ok(null);
+    }
+    private void finishUpdate(UserState state, int habitId, long ticket, LocalDate date, Boolean completed, Long logVersion) {
+        StampedLock stripe = stripeFor(habitId);
+        long stamp = stripe.writeLock();
+        try {
+            HabitLogs entry = state.habits.computeIfAbsent(habitId, id -> new HabitLogs());
+            entry.inFlight--;
+            boolean inSequence = logVersion != null && entry.logs != null
+                    && (logVersion == HabitLogBitmap.UNKNOWN_VERSION || entry.logs.getVersion() == logVersion - 1);
+            if (entry.version != ticket || !inSequence) {
+                entry.logs = null;
+            } else {
+                if (completed == null) {
+                    entry.logs.remove(date);
+                } else {
+                    entry.logs.put(date, completed);
+                }
+                entry.logs.setVersion(logVersion);
+            }
+            entry.version++;
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+    private StampedLock stripeFor(int habitId) {
+        int hash = habitId * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+    private UserState state(int userId) {
+        UserState state = users.get(userId);
+        return state == null ? new UserState() : state;
+    }
+    private static class UserState {
+        private final ConcurrentHashMap<Integer, HabitLogs> habits = new ConcurrentHashMap<>();
+        private int references;
+    }
+    private static class HabitLogs {
+        private HabitLogBitmap logs;
+        private long version;
+        private int inFlight;
+    }
+}
@@ -0,0 +1,13 @@
+public enum HabitSort {
+    NAME_ASC("name ASC, id ASC"),
+    NAME_DESC("name DESC, id DESC"),
+    NEWEST_FIRST("id DESC"),
+    OLDEST_FIRST("id ASC");
+    private final String orderBy;
+    HabitSort(String orderBy) {
+        this.orderBy = orderBy;
+    }
+    public String getOrderBy() {
+        return orderBy;
+    }
+}
@@ -1,28 +1,57 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 public class HabitTrackerApp extends JFrame {
     private static final long serialVersionUID = 1L;
+    private static final AsyncLogger LOG = AsyncLogger.get();
     private final DatabaseManager dbManager;
+    private final HabitService habitService;
     private final User currentUser;
-    private ArrayList<Habit> habits;
+    private final String sessionToken;
+    private final LocalHabitCache habitCache;
+    private static final int HABIT_PAGE_SIZE = 50;
+    private static final int STREAK_WINDOW_DAYS = 90;
+    private final HabitListModel habitModel;
     private JComboBox<Habit> habitComboBox;
+    private JTextField habitSearchField;
     private JButton[] calendarButtons;
     private JLabel streakLabel;
     private JLabel userLabel;
-    private HashMap<LocalDate, Boolean> currentHabitLogs;
+    private HabitLogBitmap currentHabitLogs;
     private YearMonth currentMonth;
     private JLabel monthLabel;
     private JLabel yearLabel;
     public HabitTrackerApp(User user, DatabaseManager dbManager) {
+        this(user, dbManager, null);
+    }
+    public HabitTrackerApp(User user, DatabaseManager dbManager, String sessionToken) {
         this.currentUser = user;
         this.dbManager = dbManager;
-        habits = new ArrayList<>();
-        currentHabitLogs = new HashMap<>();
+        this.sessionToken = sessionToken;
+        this.habitService = HabitService.getShared(dbManager);
+        habitService.acquire(user.getId());
+        ReminderScheduler.getShared(dbManager);
+        habitModel = new HabitListModel(HABIT_PAGE_SIZE);
+        currentHabitLogs = new HabitLogBitmap();
         currentMonth = YearMonth.now();
+        habitCache = new LocalHabitCache(user.getId());
         setTitle("Habit Tracker - " + user.getName());
         setSize(900, 650);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -30,7 +59,18 @@ public class HabitTrackerApp extends JFrame {
         add(createTopPanel(), BorderLayout.NORTH);
         add(createCenterPanel(), BorderLayout.CENTER);
         add(createBottomPanel(), BorderLayout.SOUTH);
-        loadHabits();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                saveCache();
+            }
+        });
+        if (habitCache.load()) {
+            showHabits(habitCache.getHabits());
+            revalidateCache();
+        } else {
+            loadHabits();
+        }
         setVisible(true);
     }
     private JPanel createTopPanel() {
@@ -43,10 +83,30 @@ public class HabitTrackerApp extends JFrame {
         topPanel.add(Box.createHorizontalStrut(20));
         JLabel selectLabel = new JLabel("Select Habit:");
         topPanel.add(selectLabel);
-        habitComboBox = new JComboBox<>();
+        habitComboBox = new JComboBox<>(habitModel);
+        habitComboBox.setPrototypeDisplayValue(new Habit(0, "Habit name placeholder"));
+        habitComboBox.setMaximumRowCount(15);
         habitComboBox.setPreferredSize(new Dimension(200, 30));
         habitComboBox.addActionListener(e -> onHabitSelected());
         topPanel.add(habitComboBox);
+        habitSearchField = new JTextField(10);
+        habitSearchField.setToolTipText("Filter habits by name");
+        habitSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                onSearchChanged();
+            }
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                onSearchChanged();
+            }
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                onSearchChanged();
+            }
+        });
+        topPanel.add(new JLabel("Search:"));
+        topPanel.add(habitSearchField);
         JButton newHabitButton = new JButton("New Habit");
         newHabitButton.addActionListener(e -> createNewHabit());
         topPanel.add(newHabitButton);
@@ -105,26 +165,173 @@ public class HabitTrackerApp extends JFrame {
         JButton exportButton = new JButton("Export Report");
         exportButton.addActionListener(e -> exportReport());
         bottomPanel.add(exportButton);
+        JButton reminderButton = new JButton("Daily Reminder");
+        reminderButton.addActionListener(e -> editReminder());
+        bottomPanel.add(reminderButton);
         return bottomPanel;
     }
     private void loadHabits() {
-        habits = dbManager.getHabitsForUser(currentUser.getId());
-        habitComboBox.removeAllItems();
-        for (Habit habit : habits) {
-            habitComboBox.addItem(habit);
+        DbResult<Integer> result = dbManager.countHabitsForUser(currentUser.getId());
+        if (!result.isOk()) {
+            showDatabaseError("Could not load habits", result);
+            return;
+        }
+        final int count = result.getValue();
+        showHabits(new HabitListModel.PageSource() {
+            @Override
+            public int count() {
+                return count;
+            }
+            @Override
+            public List<Habit> page(int offset, int limit) {
+                DbResult<ArrayList<Habit>> page = dbManager.getHabitsForUser(currentUser.getId(), HabitSort.NAME_ASC, offset, limit);
+                if (!page.isOk()) {
+                    LOG.warn("ui.loadHabits", "Could not load habit page: " + page.getMessage(), "userId", currentUser.getId(), "offset", offset);
+                }
+                return page.getValueOr(new ArrayList<>());
+            }
+            @Override
+            public Habit find(int habitId) {
+                DbResult<Habit> habit = dbManager.getHabitForUser(currentUser.getId(), habitId);
+                if (!habit.isOk() && habit.getStatus() != DbResult.Status.NOT_FOUND) {
+                    LOG.warn("ui.loadHabits", "Could not look up habit: " + habit.getMessage(), "userId", currentUser.getId(), "habitId", habitId);
+                }
+                return habit.getValueOr(null);
+            }
+            @Override
+            public boolean isInMemory() {
+                return false;
+            }
+        });
+    }
+    private void onSearchChanged() {
+        habitModel.setFilter(habitSearchField.getText());
+        if (habitComboBox.isShowing() && habitModel.getSize() > 0) {
+            habitComboBox.showPopup();
         }
-        if (!habits.isEmpty()) {
-            habitComboBox.setSelectedIndex(0);
+    }
+    private void showDatabaseError(String message, DbResult<?> result) {
+        JOptionPane.showMessageDialog(this,
+                message + ": " + result.getMessage(),
+                result.getStatus() == DbResult.Status.UNAVAILABLE ? "Database Unavailable" : "Database Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+    private void showHabits(ArrayList<Habit> loadedHabits) {
+        showHabits(HabitListModel.listSource(loadedHabits));
+    }
+    private void showHabits(HabitListModel.PageSource source) {
+        Habit previous = (Habit) habitComboBox.getSelectedItem();
+        habitModel.setSource(source);
+        Habit selected = previous == null ? null : habitModel.findById(previous.getId());
+        if (selected == null && habitModel.getSize() > 0) {
+            selected = habitModel.getElementAt(0);
+        }
+        habitModel.setSelectedItem(selected);
+        if (selected != null) {
             onHabitSelected();
         }
     }
     private void onHabitSelected() {
         Habit selectedHabit = (Habit) habitComboBox.getSelectedItem();
         if (selectedHabit != null) {
-            currentHabitLogs = dbManager.getLogsForHabit(selectedHabit.getId());
+            if (!habitService.hasLogs(currentUser.getId(), selectedHabit.getId())) {
+                HabitLogBitmap cached = habitCache.getBitmap(selectedHabit.getId());
+                if (cached != null) {
+                    habitService.seedLogs(currentUser.getId(), selectedHabit.getId(), cached);
+                }
+            }
+            LocalDate streakStart = LocalDate.now().minusDays(STREAK_WINDOW_DAYS);
+            LocalDate monthStart = currentMonth.atDay(1);
+            loadLogs(selectedHabit, monthStart.isBefore(streakStart) ? monthStart : streakStart);
+        }
+    }
+    private void loadLogs(Habit habit, LocalDate from) {
+        DbResult<HabitLogBitmap> result = habitService.getLogs(currentUser.getId(), habit.getId(), from);
+        if (!result.isOk()) {
+            currentHabitLogs = new HabitLogBitmap();
             updateCalendar();
             updateStreak();
+            showDatabaseError("Could not load habit logs", result);
+            return;
         }
+        currentHabitLogs = result.getValue();
+        updateCalendar();
+        updateStreak();
+    }
+    private void revalidateCache() {
+        new Thread(() -> {
+            DbResult<LinkedHashMap<Habit, Long>> versionsResult = dbManager.getHabitVersionsForUser(currentUser.getId());
+            if (!versionsResult.isOk()) {
+                LOG.warn("cache.revalidate", "Cache revalidation skipped: " + versionsResult.getMessage(), "userId", currentUser.getId());
+                return;
+            }
+            ArrayList<Habit> freshHabits = new ArrayList<>(versionsResult.getValue().keySet());
+            HashMap<Integer, Long> versions = new HashMap<>();
+            for (Map.Entry<Habit, Long> entry : versionsResult.getValue().entrySet()) {
+                versions.put(entry.getKey().getId(), entry.getValue());
+            }
+            SwingUtilities.invokeLater(() -> {
+                HashSet<Integer> stale = habitService.invalidateStale(currentUser.getId(), versions);
+                for (Habit habit : freshHabits) {
+                    long version = versions.get(habit.getId());
+                    if (habitCache.hasBitmap(habit.getId()) && (version == HabitLogBitmap.UNKNOWN_VERSION
+                            || habitCache.getLogVersion(habit.getId()) != version)) {
+                        stale.add(habit.getId());
+                    }
+                }
+                HashMap<Integer, HabitLogBitmap> bitmaps = cacheBitmaps(freshHabits, stale);
+                new Thread(() -> habitCache.save(freshHabits, bitmaps), "habit-cache-writer").start();
+                Habit selectedHabit = (Habit) habitComboBox.getSelectedItem();
+                if (!sameHabits(habitModel.getLoadedHabits(), freshHabits)) {
+                    showHabits(freshHabits);
+                } else if (selectedHabit != null && stale.contains(selectedHabit.getId())) {
+                    onHabitSelected();
+                }
+            });
+        }, "habit-cache-revalidation").start();
+    }
+    private HashMap<Integer, HabitLogBitmap> cacheBitmaps(List<Habit> habits, Set<Integer> stale) {
+        HashMap<Integer, HabitLogBitmap> serviceLogs = habitService.copyLoadedLogs(currentUser.getId());
+        HashMap<Integer, HabitLogBitmap> bitmaps = new HashMap<>();
+        for (Habit habit : habits) {
+            HabitLogBitmap cached = stale.contains(habit.getId()) ? null : habitCache.getBitmap(habit.getId());
+            if (serviceLogs.containsKey(habit.getId())) {
+                HabitLogBitmap loaded = serviceLogs.get(habit.getId());
+                boolean cachedWider = loaded != null && cached != null && loaded.getVersion() != HabitLogBitmap.UNKNOWN_VERSION
+                        && cached.getVersion() == loaded.getVersion() && cached.getCoveredFrom() < loaded.getCoveredFrom();
+                bitmaps.put(habit.getId(), cachedWider ? cached : loaded);
+            } else {
+                bitmaps.put(habit.getId(), cached);
+            }
+        }
+        return bitmaps;
+    }
+    private static boolean sameHabits(List<Habit> a, List<Habit> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getId() != b.get(i).getId() || !a.get(i).getName().equals(b.get(i).getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private void saveCache() {
+        List<Habit> habits = habitModel.getLoadedHabits();
+        if (!habitModel.isFullyLoaded()) {
+            LinkedHashMap<Integer, Habit> merged = new LinkedHashMap<>();
+            for (Habit habit : habitCache.getHabits()) {
+                merged.put(habit.getId(), habit);
+            }
+            for (Habit habit : habits) {
+                merged.put(habit.getId(), habit);
+            }
+            ArrayList<Habit> all = new ArrayList<>(merged.values());
+            all.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.getName(), b.getName()));
+            habits = all;
+        }
+        habitCache.save(habits, cacheBitmaps(habits, Collections.<Integer>emptySet()));
     }
     private void updateCalendar() {
         LocalDate firstOfMonth = currentMonth.atDay(1);
@@ -150,8 +357,8 @@ public class HabitTrackerApp extends JFrame {
                     calendarButtons[buttonIndex].setEnabled(true);
                     calendarButtons[buttonIndex].setToolTipText("Click to toggle completion");
                 }
-                if (currentHabitLogs.containsKey(date)) {
-                    boolean completed = currentHabitLogs.get(date);
+                Boolean completed = currentHabitLogs.get(date);
+                if (completed != null) {
                     if (completed) {
                         calendarButtons[buttonIndex].setBackground(new Color(34, 197, 94));
                     } else {
@@ -180,45 +387,90 @@ public class HabitTrackerApp extends JFrame {
         int day = Integer.parseInt(dayText);
         LocalDate date = currentMonth.atDay(day);
         Color currentColor = calendarButtons[buttonIndex].getBackground();
+        DbResult<Void> result = null;
         if (currentColor.equals(Color.WHITE)) {
-            dbManager.logHabit(selectedHabit.getId(), date, true);
-            currentHabitLogs.put(date, true);
-            calendarButtons[buttonIndex].setBackground(Color.GREEN);
+            result = habitService.logHabit(currentUser.getId(), selectedHabit.getId(), date, true);
+            if (result.isOk()) {
+                currentHabitLogs.put(date, true);
+                calendarButtons[buttonIndex].setBackground(Color.GREEN);
+            }
         } else if (currentColor.equals(Color.GREEN)) {
-            dbManager.logHabit(selectedHabit.getId(), date, false);
-            currentHabitLogs.put(date, false);
-            calendarButtons[buttonIndex].setBackground(Color.RED);
+            result = habitService.logHabit(currentUser.getId(), selectedHabit.getId(), date, false);
+            if (result.isOk()) {
+                currentHabitLogs.put(date, false);
+                calendarButtons[buttonIndex].setBackground(Color.RED);
+            }
         } else if (currentColor.equals(Color.RED)) {
-            dbManager.deleteHabitLog(selectedHabit.getId(), date);
-            currentHabitLogs.remove(date);
-            calendarButtons[buttonIndex].setBackground(Color.WHITE);
+            result = habitService.deleteLog(currentUser.getId(), selectedHabit.getId(), date);
+            if (result.isOk()) {
+                currentHabitLogs.remove(date);
+                calendarButtons[buttonIndex].setBackground(Color.WHITE);
+            }
+        }
+        if (result != null && !result.isOk()) {
+            showDatabaseError("Could not save your change", result);
         }
         updateStreak();
     }
     private void createNewHabit() {
         String habitName = JOptionPane.showInputDialog(this, "Enter habit name:");
         if (habitName != null && !habitName.trim().isEmpty()) {
-            int habitId = dbManager.addHabitForUser(habitName.trim(), currentUser.getId());
-            if (habitId > 0) {
+            DbResult<Integer> result = dbManager.addHabitForUser(habitName.trim(), currentUser.getId());
+            if (result.isOk()) {
                 JOptionPane.showMessageDialog(this, "Habit created successfully!");
                 loadHabits();
             } else {
-                JOptionPane.showMessageDialog(this, "Error creating habit!", "Error", JOptionPane.ERROR_MESSAGE);
+                showDatabaseError("Error creating habit", result);
             }
         }
     }
+    private void editReminder() {
+        ReminderScheduler scheduler = ReminderScheduler.getShared(dbManager);
+        LocalTime current = scheduler.getReminderTime(currentUser.getId());
+        String input = JOptionPane.showInputDialog(this,
+                "Remind me at (HH:mm, leave empty to turn off):",
+                current == null ? "" : current.toString());
+        if (input == null) {
+            return;
+        }
+        if (input.trim().isEmpty()) {
+            scheduler.removeReminder(currentUser.getId());
+            JOptionPane.showMessageDialog(this, "Daily reminder turned off.");
+            return;
+        }
+        LocalTime time;
+        try {
+            time = LocalTime.parse(input.trim());
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this, "Please enter a time like 20:30.", "Reminder Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (scheduler.setReminder(currentUser.getId(), time, ZoneId.systemDefault())) {
+            JOptionPane.showMessageDialog(this, "Daily reminder set for " + time + ".");
+        } else {
+            JOptionPane.showMessageDialog(this, "Could not schedule the reminder.", "Reminder Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
     private void logout() {
         int confirm = JOptionPane.showConfirmDialog(this,
                 "Are you sure you want to logout?",
                 "Confirm Logout",
                 JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
+            saveCache();
+            habitService.release(currentUser.getId());
+            SessionManager.getShared().invalidate(sessionToken);
             dispose();
             SwingUtilities.invokeLater(() -> new LoginFrame());
         }
     }
     private void changeMonth(int offset) {
         currentMonth = currentMonth.plusMonths(offset);
+        Habit selectedHabit = (Habit) habitComboBox.getSelectedItem();
+        if (selectedHabit != null && !currentHabitLogs.covers(currentMonth.atDay(1))) {
+            loadLogs(selectedHabit, currentMonth.atDay(1));
+            return;
+        }
         updateCalendar();
     }
     private void updateStreak() {
@@ -235,10 +487,15 @@ public class HabitTrackerApp extends JFrame {
         } else {
             checkDate = today.minusDays(1);
         }
-        while (currentHabitLogs.getOrDefault(checkDate, false)) {
+        while (Boolean.TRUE.equals(currentHabitLogs.get(checkDate))) {
             streak++;
             checkDate = checkDate.minusDays(1);
         }
+        Habit selectedHabit = (Habit) habitComboBox.getSelectedItem();
+        if (selectedHabit != null && !currentHabitLogs.covers(checkDate)) {
+            loadLogs(selectedHabit, null);
+            return;
+        }
         streakLabel.setText("Current Streak: " + streak + " days");
     }
     private void exportReport() {
@@ -249,8 +506,11 @@ public class HabitTrackerApp extends JFrame {
         }
         new Thread(() -> {
             try {
-                IFileExporter exporter = new TxtFileExporter("habit_report.txt");
-                exporter.export(selectedHabit.getName(), currentHabitLogs);
+                TxtFileExporter exporter = new TxtFileExporter("habit_report.txt");
+                DbResult<Long> exported = exporter.export(selectedHabit.getName(), selectedHabit.getId(), dbManager);
+                if (!exported.isOk()) {
+                    throw new IOException(exported.getMessage());
+                }
                 SwingUtilities.invokeLater(() -> {
                     JOptionPane.showMessageDialog(this, 
                         "Report exported successfully to habit_report.txt!", 
@@ -265,7 +525,7 @@ public class HabitTrackerApp extends JFrame {
                         JOptionPane.ERROR_MESSAGE);
                 });
             }
-        }).start();
+        }, "habit-report-export").start();
     }
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
@@ -0,0 +1,56 @@
+import java.util.Arrays;
+public final class HexCodec {
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+    private HexCodec() {
+    }
+    public static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+    public static String encode(byte[] bytes, int offset, int length) {
+        char[] out = new char[length * 2];
+        encodeTo(bytes, offset, length, out, 0);
+        return new String(out);
+    }
+    public static void encodeTo(byte[] bytes, int offset, int length, char[] out, int outOffset) {
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            out[outOffset++] = DIGITS[b >>> 4];
+            out[outOffset++] = DIGITS[b & 0x0f];
+        }
+    }
+    public static byte[] decode(CharSequence hex) {
+        byte[] out = new byte[hex.length() / 2];
+        if (!decodeTo(hex, 0, hex.length(), out, 0)) {
+            throw new IllegalArgumentException("Invalid hex string");
+        }
+        return out;
+    }
+    public static boolean decodeTo(CharSequence hex, int start, int end, byte[] out, int outOffset) {
+        if (((end - start) & 1) != 0) {
+            return false;
+        }
+        for (int i = start; i < end; i += 2) {
+            int high = value(hex.charAt(i));
+            int low = value(hex.charAt(i + 1));
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            out[outOffset++] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+    private static int value(char c) {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
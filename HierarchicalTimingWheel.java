@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+public class HierarchicalTimingWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final int NONE = -1;
+    public static final long NO_HANDLE = -1;
+    private final long tickMillis;
+    private final long startMillis;
+    private final int[][] buckets;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] generations;
+    private final int[] payloads;
+    private final long[] deadlines;
+    private int freeHead;
+    private int size;
+    private long currentTick;
+    public HierarchicalTimingWheel(long tickMillis, long startMillis, int capacity) {
+        if (tickMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("tickMillis and capacity must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.buckets = new int[LEVELS][WHEEL_SIZE];
+        for (int[] level : buckets) {
+            Arrays.fill(level, NONE);
+        }
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, NONE);
+        this.generations = new int[capacity];
+        this.payloads = new int[capacity];
+        this.deadlines = new long[capacity];
+        for (int i = 0; i < capacity - 1; i++) {
+            next[i] = i + 1;
+        }
+        next[capacity - 1] = NONE;
+        this.freeHead = 0;
+        this.size = 0;
+        this.currentTick = 0;
+    }
+    public int getSize() {
+        return size;
+    }
+    public int getCapacity() {
+        return next.length;
+    }
+    public long getTickMillis() {
+        return tickMillis;
+    }
+    public long getCurrentTimeMillis() {
+        return startMillis + currentTick * tickMillis;
+    }
+    public long schedule(int payload, long deadlineMillis) {
+        if (freeHead == NONE) {
+            return NO_HANDLE;
+        }
+        long deadlineTick = Math.max(currentTick, (deadlineMillis - startMillis + tickMillis - 1) / tickMillis);
+        if ((deadlineTick >>> (WHEEL_BITS * LEVELS)) != (currentTick >>> (WHEEL_BITS * LEVELS))) {
+            return NO_HANDLE;
+        }
+        int entry = freeHead;
+        freeHead = next[entry];
+        payloads[entry] = payload;
+        deadlines[entry] = deadlineTick;
+        size++;
+        place(entry, currentTick + 1);
+        return ((long) generations[entry] << 32) | entry;
+    }
+    public boolean cancel(long handle) {
+        if (handle < 0) {
+            return false;
+        }
+        int entry = (int) handle;
+        if (entry >= next.length || generations[entry] != (int) (handle >>> 32) || bucketOf[entry] == NONE) {
+            return false;
+        }
+        unlink(entry);
+        release(entry);
+        return true;
+    }
+    public void advanceTo(long nowMillis, IntConsumer expired) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+                }
+            }
+            int slot = (int) (currentTick & WHEEL_MASK);
+            int entry = buckets[0][slot];
+            buckets[0][slot] = NONE;
+            while (entry != NONE) {
+                int following = next[entry];
+                int payload = payloads[entry];
+                bucketOf[entry] = NONE;
+                release(entry);
+                expired.accept(payload);
+                entry = following;
+            }
+        }
+    }
+    private void cascade(int level, int slot) {
+        int entry = buckets[level][slot];
+        buckets[level][slot] = NONE;
+        while (entry != NONE) {
+            int following = next[entry];
+            place(entry, currentTick);
+            entry = following;
+        }
+    }
+    private void place(int entry, long earliestTick) {
+        long deadlineTick = deadlines[entry];
+        if (deadlineTick < earliestTick) {
+            deadlineTick = earliestTick;
+            deadlines[entry] = deadlineTick;
+        }
+        int level = 0;
+        while (level < LEVELS - 1
+                && (deadlineTick >>> (WHEEL_BITS * (level + 1))) != (currentTick >>> (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        int head = buckets[level][slot];
+        next[entry] = head;
+        prev[entry] = NONE;
+        if (head != NONE) {
+            prev[head] = entry;
+        }
+        buckets[level][slot] = entry;
+        bucketOf[entry] = (level << WHEEL_BITS) | slot;
+    }
+    private void unlink(int entry) {
+        int bucket = bucketOf[entry];
+        int following = next[entry];
+        int preceding = prev[entry];
+        if (preceding == NONE) {
+            buckets[bucket >>> WHEEL_BITS][bucket & WHEEL_MASK] = following;
+        } else {
+            next[preceding] = following;
+        }
+        if (following != NONE) {
+            prev[following] = preceding;
+        }
+        bucketOf[entry] = NONE;
+    }
+    private void release(int entry) {
+        generations[entry]++;
+        next[entry] = freeHead;
+        freeHead = entry;
+        size--;
+    }
+}
@@ -0,0 +1,3 @@
+public interface IHabitLogBatchHandler {
+    void onBatch(HabitLogBatch batch);
+}
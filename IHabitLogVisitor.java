@@ -0,0 +1,3 @@
+public interface IHabitLogVisitor {
+    void onLog(int epochDay, boolean completed);
+}
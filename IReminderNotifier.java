@@ -0,0 +1,5 @@
+import java.time.LocalDate;
+import java.util.List;
+public interface IReminderNotifier {
+    void notify(int userId, LocalDate date, List<Habit> pendingHabits);
+}
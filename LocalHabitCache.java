@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+public class LocalHabitCache {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final int MAGIC = 0x48544331;
+    private static final int FORMAT_VERSION = 4;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4;
+    private static final int NO_LOGS = -1;
+    private final int userId;
+    private final Path cacheFile;
+    private MappedByteBuffer buffer;
+    private HashMap<Integer, Integer> offsets;
+    private ArrayList<Habit> habits;
+    public LocalHabitCache(int userId) {
+        this(userId, Paths.get("habit_cache_" + userId + ".dat"));
+    }
+    public LocalHabitCache(int userId, Path cacheFile) {
+        this.userId = userId;
+        this.cacheFile = cacheFile;
+        this.offsets = new HashMap<>();
+        this.habits = new ArrayList<>();
+    }
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+    public synchronized boolean load() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC
+                    || mapped.getInt(4) != FORMAT_VERSION || mapped.getInt(8) != userId) {
+                return false;
+            }
+            HashMap<Integer, Integer> newOffsets = new HashMap<>();
+            ArrayList<Habit> newHabits = new ArrayList<>();
+            int habitCount = mapped.getInt(12);
+            int position = HEADER_BYTES;
+            for (int i = 0; i < habitCount; i++) {
+                int id = mapped.getInt(position);
+                int nameLength = mapped.getInt(position + 12);
+                byte[] nameBytes = new byte[nameLength];
+                ByteBuffer view = mapped.duplicate();
+                view.position(position + 16);
+                view.get(nameBytes);
+                newHabits.add(new Habit(id, new String(nameBytes, StandardCharsets.UTF_8)));
+                newOffsets.put(id, position);
+                position = recordEnd(mapped, position);
+            }
+            this.buffer = mapped;
+            this.offsets = newOffsets;
+            this.habits = newHabits;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("cache.load", "Error loading habit cache: " + e.getMessage(), "userId", userId);
+            return false;
+        }
+    }
+    public synchronized ArrayList<Habit> getHabits() {
+        return new ArrayList<>(habits);
+    }
+    public synchronized boolean hasBitmap(int habitId) {
+        Integer position = offsets.get(habitId);
+        return position != null && buffer.getInt(position + 16 + buffer.getInt(position + 12) + 12) != NO_LOGS;
+    }
+    public synchronized long getLogVersion(int habitId) {
+        Integer position = offsets.get(habitId);
+        return position == null ? HabitLogBitmap.UNKNOWN_VERSION : buffer.getLong(position + 4);
+    }
+    public synchronized HabitLogBitmap getBitmap(int habitId) {
+        Integer position = offsets.get(habitId);
+        if (position == null) {
+            return null;
+        }
+        int logsStart = position + 16 + buffer.getInt(position + 12);
+        int baseDay = buffer.getInt(logsStart + 8);
+        int words = buffer.getInt(logsStart + 12);
+        if (words == NO_LOGS) {
+            return null;
+        }
+        long[] logged = new long[words];
+        long[] completed = new long[words];
+        int loggedStart = logsStart + 16;
+        int completedStart = loggedStart + words * 8;
+        for (int w = 0; w < words; w++) {
+            logged[w] = buffer.getLong(loggedStart + w * 8);
+            completed[w] = buffer.getLong(completedStart + w * 8);
+        }
+        HabitLogBitmap bitmap = new HabitLogBitmap(baseDay, logged, completed, buffer.getLong(position + 4));
+        bitmap.setCoveredFrom(buffer.getLong(logsStart));
+        return bitmap;
+    }
+    public synchronized void save(List<Habit> currentHabits, Map<Integer, HabitLogBitmap> bitmaps) {
+        HashMap<Integer, byte[]> names = new HashMap<>();
+        long size = HEADER_BYTES;
+        for (Habit habit : currentHabits) {
+            byte[] nameBytes = habit.getName().getBytes(StandardCharsets.UTF_8);
+            names.put(habit.getId(), nameBytes);
+            HabitLogBitmap bitmap = bitmaps.get(habit.getId());
+            size += 16 + nameBytes.length + 16 + (bitmap == null ? 0 : bitmap.getWordCount() * 16L);
+        }
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(userId).putInt(currentHabits.size());
+            for (Habit habit : currentHabits) {
+                byte[] nameBytes = names.get(habit.getId());
+                HabitLogBitmap bitmap = bitmaps.get(habit.getId());
+                out.putInt(habit.getId()).putLong(bitmap == null ? HabitLogBitmap.UNKNOWN_VERSION : bitmap.getVersion()).putInt(nameBytes.length).put(nameBytes);
+                if (bitmap == null) {
+                    out.putLong(HabitLogBitmap.COMPLETE).putInt(0).putInt(NO_LOGS);
+                    continue;
+                }
+                out.putLong(bitmap.getCoveredFrom()).putInt(bitmap.getBaseDay()).putInt(bitmap.getWordCount());
+                for (int w = 0; w < bitmap.getWordCount(); w++) out.putLong(bitmap.getLoggedWord(w));
+                for (int w = 0; w < bitmap.getWordCount(); w++) out.putLong(bitmap.getCompletedWord(w));
+            }
+            out.force();
+        } catch (IOException e) {
+            LOG.error("cache.save", "Error saving habit cache", e, "userId", userId);
+            return;
+        }
+        try {
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.error("cache.save", "Error replacing habit cache", e, "userId", userId);
+            return;
+        }
+        load();
+    }
+    private static int recordEnd(ByteBuffer mapped, int position) {
+        int logsStart = position + 16 + mapped.getInt(position + 12);
+        int words = mapped.getInt(logsStart + 12);
+        return logsStart + 16 + (words == NO_LOGS ? 0 : words * 16);
+    }
+}
@@ -1,15 +1,28 @@
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 public class LoginFrame extends JFrame {
     private static final long serialVersionUID = 1L;
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final Path REMEMBERED_TOKEN_FILE = Paths.get("session.token");
+    private static final Path REMEMBERED_SESSIONS_FILE = Paths.get("sessions.dat");
     private final DatabaseManager dbManager;
     private JTextField usernameField;
     private JPasswordField passwordField;
     private JTextField nameField;
     private JTextField emailField;
     private User loggedInUser;
+    private String sessionToken;
     public LoginFrame() {
-        dbManager = new DatabaseManager();
+        dbManager = DatabaseManager.getShared();
+        if (dbManager.isRememberSessions()) {
+            SessionManager.getShared().setPersistFile(REMEMBERED_SESSIONS_FILE);
+        }
         loggedInUser = null;
         setTitle("Habit Tracker - Login");
         setSize(400, 300);
@@ -20,8 +33,57 @@ public class LoginFrame extends JFrame {
         tabbedPane.addTab("Login", createLoginPanel());
         tabbedPane.addTab("Register", createRegisterPanel());
         add(tabbedPane, BorderLayout.CENTER);
+        String rememberedToken = dbManager.isRememberSessions() ? readRememberedToken() : null;
+        if (!dbManager.isRememberSessions()) {
+            forgetRememberedSessions();
+        } else if (rememberedToken != null) {
+            User rememberedUser = SessionManager.getShared().authenticate(rememberedToken);
+            if (rememberedUser != null) {
+                loggedInUser = rememberedUser;
+                sessionToken = rememberedToken;
+                openMainApplication();
+                return;
+            }
+            forgetRememberedToken();
+        }
         setVisible(true);
     }
+    private static String readRememberedToken() {
+        if (!Files.isRegularFile(REMEMBERED_TOKEN_FILE)) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(REMEMBERED_TOKEN_FILE), StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            LOG.warn("session.remember", "Error reading remembered session: " + e.getMessage());
+            return null;
+        }
+    }
+    private static void rememberToken(String token) {
+        Path tempFile = REMEMBERED_TOKEN_FILE.resolveSibling(REMEMBERED_TOKEN_FILE.getFileName() + ".tmp");
+        try {
+            SessionManager.createPrivateFile(tempFile);
+            Files.write(tempFile, token.getBytes(StandardCharsets.US_ASCII));
+            Files.move(tempFile, REMEMBERED_TOKEN_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("session.remember", "Error saving remembered session: " + e.getMessage());
+        }
+    }
+    private static void forgetRememberedToken() {
+        try {
+            Files.deleteIfExists(REMEMBERED_TOKEN_FILE);
+        } catch (IOException e) {
+            LOG.warn("session.remember", "Error removing remembered session: " + e.getMessage());
+        }
+    }
+    private static void forgetRememberedSessions() {
+        forgetRememberedToken();
+        try {
+            Files.deleteIfExists(REMEMBERED_SESSIONS_FILE);
+        } catch (IOException e) {
+            LOG.warn("session.remember", "Error removing saved sessions: " + e.getMessage());
+        }
+    }
     private JPanel createLoginPanel() {
         JPanel panel = new JPanel(new GridBagLayout());
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -120,19 +182,29 @@ public class LoginFrame extends JFrame {
                 JOptionPane.ERROR_MESSAGE);
             return;
         }
-        loggedInUser = dbManager.loginUser(username, password);
-        if (loggedInUser != null) {
+        DbResult<User> result = dbManager.loginUser(username, password);
+        loggedInUser = result.getValue();
+        if (result.isOk()) {
+            sessionToken = SessionManager.getShared().createSession(loggedInUser);
+            if (dbManager.isRememberSessions()) {
+                rememberToken(sessionToken);
+            }
             JOptionPane.showMessageDialog(this, 
                 "Welcome back, " + loggedInUser.getName() + "!", 
                 "Login Successful", 
                 JOptionPane.INFORMATION_MESSAGE);
             openMainApplication();
-        } else {
+        } else if (result.getStatus() == DbResult.Status.NOT_FOUND) {
             JOptionPane.showMessageDialog(this, 
                 "Invalid username or password!", 
                 "Login Failed", 
                 JOptionPane.ERROR_MESSAGE);
             passwordField.setText("");
+        } else {
+            JOptionPane.showMessageDialog(this, 
+                "Login is unavailable right now: " + result.getMessage(), 
+                "Login Failed", 
+                JOptionPane.ERROR_MESSAGE);
         }
     }
     private void handleRegister(String name, String email, String username, String password) {
@@ -150,24 +222,37 @@ public class LoginFrame extends JFrame {
                 JOptionPane.ERROR_MESSAGE);
             return;
         }
-        int userId = dbManager.registerUser(name, username, email, password);
-        if (userId > 0) {
+        DbResult<Boolean> taken = dbManager.isUsernameTaken(username);
+        if (taken.isOk() && taken.getValue()) {
+            JOptionPane.showMessageDialog(this, 
+                "Registration failed! Username already exists.", 
+                "Registration Error", 
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        DbResult<Integer> result = dbManager.registerUser(name, username, email, password);
+        if (result.isOk()) {
             JOptionPane.showMessageDialog(this, 
                 "Account created successfully! Please login.", 
                 "Registration Successful", 
                 JOptionPane.INFORMATION_MESSAGE);
             nameField.setText("");
             emailField.setText("");
+        } else if (result.getStatus() == DbResult.Status.CONFLICT) {
+            JOptionPane.showMessageDialog(this, 
+                "Registration failed! Username already exists.", 
+                "Registration Error", 
+                JOptionPane.ERROR_MESSAGE);
         } else {
             JOptionPane.showMessageDialog(this, 
-                "Registration failed! Username may already exist.", 
+                "Registration failed! " + result.getMessage(), 
                 "Registration Error", 
                 JOptionPane.ERROR_MESSAGE);
         }
     }
     private void openMainApplication() {
         SwingUtilities.invokeLater(() -> {
-            new HabitTrackerApp(loggedInUser, dbManager);
+            new HabitTrackerApp(loggedInUser, dbManager, sessionToken);
             dispose();
         });
     }
@@ -0,0 +1,222 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+public class PasswordHasher {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final int LEGACY_HEX_LENGTH = HASH_BYTES * 2;
+    public static final int MIN_ITERATIONS = 100000;
+    public static final int MAX_ITERATIONS = 5000000;
+    public static final int DEFAULT_ITERATIONS = 210000;
+    private static final int REHASH_FLOOR_PERCENT = 80;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+    private volatile int iterations;
+    private volatile String dummyHash;
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+    public PasswordHasher(int iterations) {
+        this.iterations = clamp(iterations);
+    }
+    public int getIterations() {
+        return iterations;
+    }
+    public void setIterations(int iterations) {
+        this.iterations = clamp(iterations);
+    }
+    public int calibrate(long targetMillis) {
+        int probeIterations = 20000;
+        long best = Long.MAX_VALUE;
+        byte[] salt = new byte[SALT_BYTES];
+        for (int run = 0; run < 5; run++) {
+            long started = System.nanoTime();
+            derive("calibration-password", salt, probeIterations);
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        long perIteration = Math.max(1, best / probeIterations);
+        long calibrated = targetMillis * 1000000L / perIteration;
+        setIterations((int) Math.min(Integer.MAX_VALUE, calibrated / 1000 * 1000));
+        LOG.info("auth.calibrate", "Password hashing calibrated", "iterations", iterations, "targetMs", targetMillis);
+        return iterations;
+    }
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int cost = iterations;
+        byte[] derived = derive(password, salt, cost);
+        String costText = Integer.toString(cost);
+        char[] out = new char[PREFIX.length() + costText.length() + 1 + SALT_BYTES * 2 + 1 + HASH_BYTES * 2];
+        int position = 0;
+        PREFIX.getChars(0, PREFIX.length(), out, position);
+        position += PREFIX.length();
+        costText.getChars(0, costText.length(), out, position);
+        position += costText.length();
+        out[position++] = '$';
+        HexCodec.encodeTo(salt, 0, SALT_BYTES, out, position);
+        position += SALT_BYTES * 2;
+        out[position++] = '$';
+        HexCodec.encodeTo(derived, 0, HASH_BYTES, out, position);
+        return new String(out);
+    }
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+        Workspace ws = WORKSPACE.get();
+        if (!stored.startsWith(PREFIX)) {
+            if (stored.length() != LEGACY_HEX_LENGTH || !HexCodec.decodeTo(stored, 0, stored.length(), ws.expected, 0)) {
+                return false;
+            }
+            int length = ws.encodeLegacy(password);
+            ws.digest.reset();
+            ws.digest.update(ws.passwordBytes, 0, length);
+            try {
+                ws.digest.digest(ws.result, 0, HASH_BYTES);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            return MessageDigest.isEqual(ws.result, ws.expected);
+        }
+        int costEnd = stored.indexOf('$', PREFIX.length());
+        int saltEnd = costEnd < 0 ? -1 : stored.indexOf('$', costEnd + 1);
+        if (saltEnd != costEnd + 1 + SALT_BYTES * 2 || stored.length() != saltEnd + 1 + HASH_BYTES * 2) {
+            return false;
+        }
+        int cost = parseCost(stored, PREFIX.length(), costEnd);
+        if (cost <= 0
+                || !HexCodec.decodeTo(stored, costEnd + 1, saltEnd, ws.salt, 0)
+                || !HexCodec.decodeTo(stored, saltEnd + 1, stored.length(), ws.expected, 0)) {
+            return false;
+        }
+        derive(ws, password, ws.salt, cost);
+        return MessageDigest.isEqual(ws.result, ws.expected);
+    }
+    public void verifyDummy(String password) {
+        String dummy = dummyHash;
+        int costEnd = dummy == null ? -1 : dummy.indexOf('$', PREFIX.length());
+        if (dummy == null || parseCost(dummy, PREFIX.length(), costEnd) != iterations) {
+            dummy = hash("dummy-password");
+            dummyHash = dummy;
+        }
+        verify(password, dummy);
+    }
+    public boolean isLegacy(String stored) {
+        return stored != null && !stored.startsWith(PREFIX);
+    }
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int costEnd = stored.indexOf('$', PREFIX.length());
+        int current = iterations;
+        int floor = (int) ((long) current * REHASH_FLOOR_PERCENT / 100);
+        int threshold = current < DEFAULT_ITERATIONS ? floor : Math.max(DEFAULT_ITERATIONS, floor);
+        return costEnd < 0 || parseCost(stored, PREFIX.length(), costEnd) < threshold;
+    }
+    public String legacyHash(String password) {
+        Workspace ws = WORKSPACE.get();
+        int length = ws.encodeLegacy(password);
+        ws.digest.reset();
+        ws.digest.update(ws.passwordBytes, 0, length);
+        try {
+            ws.digest.digest(ws.result, 0, HASH_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        return HexCodec.encode(ws.result);
+    }
+    private byte[] derive(String password, byte[] salt, int cost) {
+        Workspace ws = WORKSPACE.get();
+        derive(ws, password, salt, cost);
+        return Arrays.copyOf(ws.result, HASH_BYTES);
+    }
+    private static void derive(Workspace ws, String password, byte[] salt, int cost) {
+        int length = ws.encode(password);
+        try {
+            ws.mac.init(new SecretKeySpec(ws.passwordBytes, 0, Math.max(1, length), "HmacSHA256"));
+            ws.mac.update(salt, 0, SALT_BYTES);
+            ws.mac.update(ws.blockIndex, 0, 4);
+            ws.mac.doFinal(ws.block, 0);
+            System.arraycopy(ws.block, 0, ws.result, 0, HASH_BYTES);
+            for (int i = 1; i < cost; i++) {
+                ws.mac.update(ws.block, 0, HASH_BYTES);
+                ws.mac.doFinal(ws.block, 0);
+                for (int j = 0; j < HASH_BYTES; j++) {
+                    ws.result[j] ^= ws.block[j];
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 derivation failed", e);
+        } finally {
+            Arrays.fill(ws.passwordBytes, 0, Math.min(ws.passwordBytes.length, Math.max(1, length)), (byte) 0);
+        }
+    }
+    private static int parseCost(String stored, int start, int end) {
+        if (end <= start || end - start > 9) {
+            return -1;
+        }
+        int cost = 0;
+        for (int i = start; i < end; i++) {
+            char c = stored.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            cost = cost * 10 + (c - '0');
+        }
+        return cost;
+    }
+    private static int clamp(int iterations) {
+        return Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+    private static class Workspace {
+        private final Mac mac;
+        private final MessageDigest digest;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetEncoder legacyEncoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final byte[] blockIndex = {0, 0, 0, 1};
+        private final byte[] block = new byte[HASH_BYTES];
+        private final byte[] result = new byte[HASH_BYTES];
+        private final byte[] expected = new byte[HASH_BYTES];
+        private final byte[] salt = new byte[SALT_BYTES];
+        private byte[] passwordBytes = new byte[64];
+        private Workspace() {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+        private int encode(String password) {
+            return encode(encoder, password);
+        }
+        private int encodeLegacy(String password) {
+            return encode(legacyEncoder, password);
+        }
+        private int encode(CharsetEncoder charsetEncoder, String password) {
+            int needed = (int) Math.ceil(password.length() * (double) charsetEncoder.maxBytesPerChar());
+            if (passwordBytes.length < Math.max(1, needed)) {
+                passwordBytes = new byte[needed];
+            }
+            charsetEncoder.reset();
+            ByteBuffer out = ByteBuffer.wrap(passwordBytes);
+            charsetEncoder.encode(CharBuffer.wrap(password), out, true);
+            charsetEncoder.flush(out);
+            return out.position();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+public class ReminderScheduler {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final long DEFAULT_TICK_MILLIS = 1000;
+    private static final int QUERY_BATCH_SIZE = 500;
+    private static final int FILE_MAGIC = 0x52454D31;
+    public static final int DEFAULT_CAPACITY = 100000;
+    private static ReminderScheduler shared;
+    private final DatabaseManager dbManager;
+    private final IReminderNotifier notifier;
+    private final HierarchicalTimingWheel wheel;
+    private final HashMap<Integer, Reminder> reminders;
+    private final Object lock = new Object();
+    private final Object persistLock = new Object();
+    private final Path persistFile;
+    private long persistSequence;
+    private long persistedSequence;
+    private Thread worker;
+    private volatile boolean running;
+    public ReminderScheduler(DatabaseManager dbManager, IReminderNotifier notifier, int capacity) {
+        this(dbManager, notifier, capacity, DEFAULT_TICK_MILLIS, null);
+    }
+    public ReminderScheduler(DatabaseManager dbManager, IReminderNotifier notifier, int capacity, long tickMillis, Path persistFile) {
+        this.dbManager = dbManager;
+        this.notifier = notifier;
+        this.wheel = new HierarchicalTimingWheel(tickMillis, System.currentTimeMillis(), capacity);
+        this.reminders = new HashMap<>();
+        this.persistFile = persistFile;
+        if (persistFile != null) {
+            load();
+        }
+    }
+    public static synchronized ReminderScheduler getShared(DatabaseManager dbManager) {
+        if (shared == null) {
+            shared = new ReminderScheduler(dbManager, new FileReminderNotifier("reminders.log"),
+                    DEFAULT_CAPACITY, DEFAULT_TICK_MILLIS, Paths.get("reminders.dat"));
+            shared.start();
+        }
+        return shared;
+    }
+    public boolean setReminder(int userId, LocalTime time, ZoneId zone) {
+        synchronized (lock) {
+            Reminder existing = reminders.get(userId);
+            if (existing != null) {
+                wheel.cancel(existing.handle);
+            } else if (reminders.size() >= wheel.getCapacity()) {
+                return false;
+            }
+            Reminder reminder = new Reminder(time, zone);
+            reminder.handle = wheel.schedule(userId, nextOccurrence(time, zone, wheel.getCurrentTimeMillis()));
+            if (reminder.handle < 0) {
+                if (existing != null) {
+                    existing.handle = wheel.schedule(userId, nextOccurrence(existing.time, existing.zone, wheel.getCurrentTimeMillis()));
+                }
+                return false;
+            }
+            reminders.put(userId, reminder);
+        }
+        persist();
+        return true;
+    }
+    public void removeReminder(int userId) {
+        boolean removed;
+        synchronized (lock) {
+            Reminder existing = reminders.remove(userId);
+            removed = existing != null;
+            if (removed) {
+                wheel.cancel(existing.handle);
+            }
+        }
+        if (removed) {
+            persist();
+        }
+    }
+    public LocalTime getReminderTime(int userId) {
+        synchronized (lock) {
+            Reminder reminder = reminders.get(userId);
+            return reminder == null ? null : reminder.time;
+        }
+    }
+    public int getScheduledCount() {
+        synchronized (lock) {
+            return reminders.size();
+        }
+    }
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "reminder-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(wheel.getTickMillis());
+            } catch (InterruptedException e) {
+                break;
+            }
+            runDue(System.currentTimeMillis());
+        }
+    }
+    void runDue(long nowMillis) {
+        IntList due = new IntList();
+        HashMap<LocalDate, IntList> byDate = new HashMap<>();
+        Instant now = Instant.ofEpochMilli(nowMillis);
+        synchronized (lock) {
+            wheel.advanceTo(nowMillis, due::add);
+            for (int i = 0; i < due.size; i++) {
+                int userId = due.values[i];
+                Reminder reminder = reminders.get(userId);
+                if (reminder == null) {
+                    continue;
+                }
+                LocalDate localDate = now.atZone(reminder.zone).toLocalDate();
+                byDate.computeIfAbsent(localDate, d -> new IntList()).add(userId);
+                reminder.handle = wheel.schedule(userId, nextOccurrence(reminder.time, reminder.zone, nowMillis));
+                if (reminder.handle < 0) {
+                    reminders.remove(userId);
+                }
+            }
+        }
+        for (Map.Entry<LocalDate, IntList> entry : byDate.entrySet()) {
+            IntList userIds = entry.getValue();
+            for (int offset = 0; offset < userIds.size; offset += QUERY_BATCH_SIZE) {
+                int count = Math.min(QUERY_BATCH_SIZE, userIds.size - offset);
+                DbResult<HashMap<Integer, ArrayList<Habit>>> pending =
+                        dbManager.getUnloggedHabitsForUsers(userIds.values, offset, count, entry.getKey());
+                if (!pending.isOk()) {
+                    LOG.warn("reminder.run", "Skipping reminders: " + pending.getMessage(), "users", count, "date", entry.getKey());
+                    continue;
+                }
+                for (Map.Entry<Integer, ArrayList<Habit>> userPending : pending.getValue().entrySet()) {
+                    notifier.notify(userPending.getKey(), entry.getKey(), userPending.getValue());
+                }
+            }
+        }
+    }
+    private void persist() {
+        if (persistFile == null) {
+            return;
+        }
+        long sequence;
+        int[] userIds;
+        Reminder[] snapshot;
+        synchronized (lock) {
+            sequence = ++persistSequence;
+            userIds = new int[reminders.size()];
+            snapshot = new Reminder[reminders.size()];
+            int count = 0;
+            for (Map.Entry<Integer, Reminder> entry : reminders.entrySet()) {
+                userIds[count] = entry.getKey();
+                snapshot[count++] = entry.getValue();
+            }
+        }
+        Path tempFile = persistFile.resolveSibling(persistFile.getFileName() + ".tmp");
+        synchronized (persistLock) {
+            if (sequence <= persistedSequence) {
+                return;
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(FILE_MAGIC);
+                for (int i = 0; i < userIds.length; i++) {
+                    out.writeBoolean(true);
+                    out.writeInt(userIds[i]);
+                    out.writeInt(snapshot[i].time.toSecondOfDay());
+                    out.writeUTF(snapshot[i].zone.getId());
+                }
+                out.writeBoolean(false);
+            } catch (IOException e) {
+                LOG.error("reminder.persist", "Error saving reminders", e, "file", persistFile);
+                return;
+            }
+            try {
+                Files.move(tempFile, persistFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                persistedSequence = sequence;
+            } catch (IOException e) {
+                LOG.error("reminder.persist", "Error replacing reminder file", e, "file", persistFile);
+            }
+        }
+    }
+    private void load() {
+        if (!Files.isRegularFile(persistFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(persistFile)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return;
+            }
+            synchronized (lock) {
+                while (in.readBoolean()) {
+                    int userId = in.readInt();
+                    Reminder reminder = new Reminder(LocalTime.ofSecondOfDay(in.readInt()), ZoneId.of(in.readUTF()));
+                    reminder.handle = wheel.schedule(userId, nextOccurrence(reminder.time, reminder.zone, wheel.getCurrentTimeMillis()));
+                    if (reminder.handle >= 0) {
+                        reminders.put(userId, reminder);
+                    }
+                }
+            }
+            LOG.info("reminder.load", "Restored reminders", "reminders", reminders.size());
+        } catch (IOException | DateTimeException e) {
+            LOG.error("reminder.load", "Error loading reminders", e, "file", persistFile);
+        }
+    }
+    private static long nextOccurrence(LocalTime time, ZoneId zone, long afterMillis) {
+        ZonedDateTime after = Instant.ofEpochMilli(afterMillis).atZone(zone);
+        ZonedDateTime candidate = after.toLocalDate().atTime(time).atZone(zone);
+        if (!candidate.isAfter(after)) {
+            candidate = after.toLocalDate().plusDays(1).atTime(time).atZone(zone);
+        }
+        return candidate.toInstant().toEpochMilli();
+    }
+    private static class Reminder {
+        private final LocalTime time;
+        private final ZoneId zone;
+        private long handle;
+        private Reminder(LocalTime time, ZoneId zone) {
+            this.time = time;
+            this.zone = zone;
+        }
+    }
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+public class ReplicaRouter {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    public enum Strategy {
+        ROUND_ROBIN,
+        LEAST_LATENCY;
+        public static Strategy fromProperty(String value) {
+            if (value != null && value.trim().replace('-', '_').equalsIgnoreCase("least_latency")) {
+                return LEAST_LATENCY;
+            }
+            return ROUND_ROBIN;
+        }
+    }
+    private static final int STICKY_PRUNE_THRESHOLD = 10000;
+    private final List<String> replicaUrls;
+    private final AtomicLongArray latencyNanos;
+    private final AtomicLongArray unavailableUntil;
+    private final AtomicLongArray lagCheckedAt;
+    private final AtomicInteger nextReplica;
+    private final ConcurrentHashMap<String, Long> stickyUntil;
+    private final Map<Connection, Integer> openConnections;
+    private String user;
+    private String password;
+    private Strategy strategy;
+    private long stickyMillis;
+    private long cooldownMillis;
+    private long lagCheckMillis;
+    private String lagQuery;
+    private long maxLagSeconds;
+    public ReplicaRouter(List<String> replicaUrls, String user, String password) {
+        this.replicaUrls = new ArrayList<>(replicaUrls);
+        this.latencyNanos = new AtomicLongArray(replicaUrls.size());
+        this.unavailableUntil = new AtomicLongArray(replicaUrls.size());
+        this.lagCheckedAt = new AtomicLongArray(replicaUrls.size());
+        this.nextReplica = new AtomicInteger();
+        this.stickyUntil = new ConcurrentHashMap<>();
+        this.openConnections = Collections.synchronizedMap(new WeakHashMap<>());
+        this.user = user;
+        this.password = password;
+        this.strategy = Strategy.ROUND_ROBIN;
+        this.stickyMillis = 5000;
+        this.cooldownMillis = 30000;
+        this.lagCheckMillis = 5000;
+        this.maxLagSeconds = 10;
+    }
+    public List<String> getReplicaUrls() {
+        return new ArrayList<>(replicaUrls);
+    }
+    public boolean hasReplicas() {
+        return !replicaUrls.isEmpty();
+    }
+    public String getUser() {
+        return user;
+    }
+    public void setUser(String user) {
+        this.user = user;
+    }
+    public String getPassword() {
+        return password;
+    }
+    public void setPassword(String password) {
+        this.password = password;
+    }
+    public Strategy getStrategy() {
+        return strategy;
+    }
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+    public long getStickyMillis() {
+        return stickyMillis;
+    }
+    public void setStickyMillis(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+    public void setCooldownMillis(long cooldownMillis) {
+        this.cooldownMillis = cooldownMillis;
+    }
+    public long getLagCheckMillis() {
+        return lagCheckMillis;
+    }
+    public void setLagCheckMillis(long lagCheckMillis) {
+        this.lagCheckMillis = lagCheckMillis;
+    }
+    public String getLagQuery() {
+        return lagQuery;
+    }
+    public void setLagQuery(String lagQuery) {
+        this.lagQuery = lagQuery == null || lagQuery.trim().isEmpty() ? null : lagQuery.trim();
+    }
+    public long getMaxLagSeconds() {
+        return maxLagSeconds;
+    }
+    public void setMaxLagSeconds(long maxLagSeconds) {
+        this.maxLagSeconds = maxLagSeconds;
+    }
+    public void recordWrite(String stickyKey) {
+        if (stickyKey == null || replicaUrls.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        stickyUntil.put(stickyKey, now + stickyMillis);
+        if (stickyUntil.size() > STICKY_PRUNE_THRESHOLD) {
+            Iterator<Map.Entry<String, Long>> it = stickyUntil.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue() < now) {
+                    it.remove();
+                }
+            }
+        }
+    }
+    public boolean isSticky(String stickyKey) {
+        if (stickyKey == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(stickyKey);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            stickyUntil.remove(stickyKey, until);
+            return false;
+        }
+        return true;
+    }
+    public Connection openReadConnection(String stickyKey) {
+        if (replicaUrls.isEmpty() || isSticky(stickyKey)) {
+            return null;
+        }
+        int count = replicaUrls.size();
+        int first = strategy == Strategy.LEAST_LATENCY ? fastestReplica() : Math.floorMod(nextReplica.getAndIncrement(), count);
+        for (int attempt = 0; attempt < count; attempt++) {
+            int index = (first + attempt) % count;
+            if (unavailableUntil.get(index) > System.currentTimeMillis()) {
+                continue;
+            }
+            Connection conn = tryReplica(index);
+            if (conn != null) {
+                openConnections.put(conn, index);
+                return conn;
+            }
+        }
+        return null;
+    }
+    private int fastestReplica() {
+        long now = System.currentTimeMillis();
+        int best = 0;
+        long bestLatency = Long.MAX_VALUE;
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            long latency = latencyNanos.get(i);
+            if (unavailableUntil.get(i) <= now && latency < bestLatency) {
+                best = i;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+    private Connection tryReplica(int index) {
+        long started = System.nanoTime();
+        Connection conn = null;
+        try {
+            conn = DriverManager.getConnection(replicaUrls.get(index), user, password);
+            long now = System.currentTimeMillis();
+            long lastCheck = lagCheckedAt.get(index);
+            if (lagQuery != null && now - lastCheck >= lagCheckMillis && lagCheckedAt.compareAndSet(index, lastCheck, now)) {
+                try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(lagQuery)) {
+                    if (rs.next()) {
+                        long lag = rs.getLong(1);
+                        if (rs.wasNull() || lag > maxLagSeconds) {
+                            LOG.warn("db.replica", "Replica is lagging, routing around it", "replica", replicaUrls.get(index), "lagSeconds", lag);
+                            markUnavailable(index);
+                            conn.close();
+                            return null;
+                        }
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - started;
+            long previous = latencyNanos.get(index);
+            latencyNanos.set(index, previous == 0 ? elapsed : previous - (previous >> 3) + (elapsed >> 3));
+            return conn;
+        } catch (SQLException e) {
+            LOG.warn("db.replica", "Replica connection error: " + e.getMessage(), "replica", replicaUrls.get(index), "latencyMs", (System.nanoTime() - started) / 1000000);
+            markUnavailable(index);
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException closeError) {
+                    LOG.warn("db.replica", "Error closing replica connection", "replica", replicaUrls.get(index));
+                }
+            }
+            return null;
+        }
+    }
+    public void markUnavailable(Connection conn) {
+        Integer index = openConnections.remove(conn);
+        if (index != null) {
+            LOG.warn("db.replica", "Replica query failed, routing around it", "replica", replicaUrls.get(index));
+            markUnavailable(index);
+        }
+    }
+    private void markUnavailable(int index) {
+        unavailableUntil.set(index, System.currentTimeMillis() + cooldownMillis);
+        latencyNanos.set(index, 0);
+        lagCheckedAt.set(index, 0);
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+public class RollingFileSink {
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private BufferedWriter writer;
+    private long size;
+    public RollingFileSink(Path file, long maxBytes, int maxFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+    public Path getFile() {
+        return file;
+    }
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+    public void write(String line) throws IOException {
+        if (writer == null) {
+            open();
+        }
+        writer.write(line);
+        writer.newLine();
+        size += line.length() + 1;
+        if (size >= maxBytes) {
+            roll();
+        }
+    }
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+    private void open() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+        size = Files.size(file);
+    }
+    private void roll() throws IOException {
+        close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = rolled(i);
+            if (Files.exists(source)) {
+                Files.move(source, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,302 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+public class SchemaManager {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final long TO_DAYS_EPOCH_OFFSET = 719528;
+    private static final String FUTURE_PARTITION = "pfuture";
+    public enum LogPartitioning {
+        NONE,
+        MONTH,
+        YEAR;
+        public LocalDate periodStart(LocalDate date) {
+            return this == YEAR ? date.withDayOfYear(1) : date.withDayOfMonth(1);
+        }
+        public LocalDate nextPeriod(LocalDate periodStart) {
+            return this == YEAR ? periodStart.plusYears(1) : periodStart.plusMonths(1);
+        }
+        public String partitionName(LocalDate periodStart) {
+            return "p" + periodStart.format(DateTimeFormatter.ofPattern(this == YEAR ? "yyyy" : "yyyyMM"));
+        }
+    }
+    public static class LogPartition {
+        private final String name;
+        private final LocalDate upperBound;
+        private final long rows;
+        public LogPartition(String name, LocalDate upperBound, long rows) {
+            this.name = name;
+            this.upperBound = upperBound;
+            this.rows = rows;
+        }
+        public String getName() {
+            return name;
+        }
+        public LocalDate getUpperBound() {
+            return upperBound;
+        }
+        public long getRows() {
+            return rows;
+        }
+        @Override
+        public String toString() {
+            return name + (upperBound == null ? " (MAXVALUE)" : " (< " + upperBound + ")");
+        }
+    }
+    public boolean ensureUsernameUnique(Connection conn) throws SQLException {
+        if (hasUniqueIndex(conn, "users", "username")) {
+            return true;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE UNIQUE INDEX uq_users_username ON users (username)");
+            LOG.info("schema.usernameUnique", "Created unique index uq_users_username on users.username");
+            return true;
+        } catch (SQLException e) {
+            LOG.warn("schema.usernameUnique", "Could not add unique index on users.username: " + e.getMessage());
+            return false;
+        }
+    }
+    public boolean ensurePasswordHashCapacity(Connection conn) throws SQLException {
+        int size = columnSize(conn, "users", "password_hash");
+        if (size < 0 || size >= 128) {
+            return true;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE users MODIFY password_hash VARCHAR(255) NOT NULL");
+            LOG.info("schema.passwordHash", "Widened users.password_hash to VARCHAR(255)");
+            return true;
+        } catch (SQLException e) {
+            LOG.warn("schema.passwordHash", "Could not widen users.password_hash: " + e.getMessage(), "size", size);
+            return false;
+        }
+    }
+    public boolean ensureLogVersionColumn(Connection conn) throws SQLException {
+        if (columnSize(conn, "habits", "log_version") >= 0) {
+            return true;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE habits ADD COLUMN log_version BIGINT NOT NULL DEFAULT 0");
+            LOG.info("schema.logVersion", "Added habits.log_version");
+            return true;
+        } catch (SQLException e) {
+            LOG.warn("schema.logVersion", "Could not add habits.log_version: " + e.getMessage());
+            return false;
+        }
+    }
+    private int columnSize(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return rs.getInt("COLUMN_SIZE");
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+    private boolean hasUniqueIndex(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            HashMap<String, Set<String>> indexColumns = new HashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(conn.getCatalog(), null, name, true, false)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String columnName = rs.getString("COLUMN_NAME");
+                    if (indexName != null && columnName != null) {
+                        indexColumns.computeIfAbsent(indexName, k -> new HashSet<>()).add(columnName.toLowerCase());
+                    }
+                }
+            }
+            for (Map.Entry<String, Set<String>> index : indexColumns.entrySet()) {
+                if (index.getValue().size() == 1 && index.getValue().contains(column)) {
+                    return true;
+                }
+            }
+            if (!indexColumns.isEmpty()) {
+                return false;
+            }
+        }
+        return false;
+    }
+    public List<LogPartition> getLogPartitions(Connection conn) throws SQLException {
+        return getPartitions(conn, "habit_logs");
+    }
+    private List<LogPartition> getPartitions(Connection conn, String table) throws SQLException {
+        ArrayList<LogPartition> partitions = new ArrayList<>();
+        String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                + "ORDER BY PARTITION_ORDINAL_POSITION";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String description = rs.getString(2);
+                    LocalDate upperBound = "MAXVALUE".equalsIgnoreCase(description)
+                            ? null
+                            : LocalDate.ofEpochDay(Long.parseLong(description.trim()) - TO_DAYS_EPOCH_OFFSET);
+                    partitions.add(new LogPartition(rs.getString(1), upperBound, rs.getLong(3)));
+                }
+            }
+        }
+        return partitions;
+    }
+    public boolean ensureLogPartitions(Connection conn, LogPartitioning granularity, int periodsAhead, LocalDate today)
+            throws SQLException {
+        if (granularity == LogPartitioning.NONE) {
+            return false;
+        }
+        LocalDate horizon = granularity.periodStart(today);
+        for (int i = 0; i <= periodsAhead; i++) {
+            horizon = granularity.nextPeriod(horizon);
+        }
+        List<LogPartition> partitions = getLogPartitions(conn);
+        if (partitions.isEmpty()) {
+            return partitionLogTable(conn, granularity, horizon);
+        }
+        LocalDate lastBound = null;
+        for (LogPartition partition : partitions) {
+            if (partition.getUpperBound() != null) {
+                lastBound = partition.getUpperBound();
+            }
+        }
+        if (lastBound == null) {
+            lastBound = granularity.periodStart(today);
+        }
+        StringBuilder added = new StringBuilder();
+        while (lastBound.isBefore(horizon)) {
+            LocalDate next = granularity.nextPeriod(lastBound);
+            if (added.length() > 0) {
+                added.append(", ");
+            }
+            added.append(partitionClause(granularity.partitionName(lastBound), next));
+            lastBound = next;
+        }
+        if (added.length() == 0) {
+            return true;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE habit_logs REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                    + added + ", PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+        }
+        LOG.info("schema.logPartitions", "Created habit_logs partitions ahead", "until", horizon, "granularity", granularity);
+        return true;
+    }
+    public int dropLogPartitionsBefore(Connection conn, LocalDate cutoff, boolean archive) throws SQLException {
+        int dropped = 0;
+        for (LogPartition partition : getLogPartitions(conn)) {
+            if (partition.getUpperBound() == null || partition.getUpperBound().isAfter(cutoff)) {
+                continue;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                if (archive) {
+                    String archiveTable = "habit_logs_archive_" + partition.getName().substring(1);
+                    stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + archiveTable + " LIKE habit_logs");
+                    if (!getPartitions(conn, archiveTable).isEmpty()) {
+                        stmt.executeUpdate("ALTER TABLE " + archiveTable + " REMOVE PARTITIONING");
+                    }
+                    boolean partitionEmpty = !hasRows(conn, "habit_logs PARTITION (" + partition.getName() + ")");
+                    if (!partitionEmpty && hasRows(conn, archiveTable)) {
+                        LOG.warn("schema.logPartitions", "Archive table already holds rows, partition kept",
+                                "partition", partition.getName(), "archive", archiveTable);
+                        continue;
+                    }
+                    if (!partitionEmpty) {
+                        stmt.executeUpdate("ALTER TABLE habit_logs EXCHANGE PARTITION " + partition.getName()
+                                + " WITH TABLE " + archiveTable);
+                    }
+                }
+                stmt.executeUpdate("ALTER TABLE habit_logs DROP PARTITION " + partition.getName());
+            }
+            LOG.info("schema.logPartitions", archive ? "Archived and dropped partition" : "Dropped partition",
+                    "partition", partition.getName(), "rows", partition.getRows());
+            dropped++;
+        }
+        return dropped;
+    }
+    private boolean partitionLogTable(Connection conn, LogPartitioning granularity, LocalDate horizon) throws SQLException {
+        LocalDate first = granularity.periodStart(LocalDate.now());
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT MIN(date) FROM habit_logs")) {
+            if (rs.next()) {
+                Date earliest = rs.getDate(1);
+                if (earliest != null && earliest.toLocalDate().isBefore(first)) {
+                    first = granularity.periodStart(earliest.toLocalDate());
+                }
+            }
+        }
+        StringBuilder clauses = new StringBuilder();
+        for (LocalDate period = first; period.isBefore(horizon); period = granularity.nextPeriod(period)) {
+            clauses.append(partitionClause(granularity.partitionName(period), granularity.nextPeriod(period))).append(", ");
+        }
+        clauses.append("PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN MAXVALUE");
+        String blocker = findPartitioningBlocker(conn);
+        if (blocker != null) {
+            LOG.warn("schema.logPartitions", "habit_logs left unpartitioned: " + blocker);
+            return false;
+        }
+        String keyChange = primaryKeyIncludes(conn, "habit_logs", "date") ? "" : "DROP PRIMARY KEY, ADD PRIMARY KEY (id, date) ";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE habit_logs " + keyChange + "PARTITION BY RANGE (TO_DAYS(date)) (" + clauses + ")");
+            LOG.info("schema.logPartitions", "Partitioned habit_logs", "granularity", granularity, "from", first, "until", horizon);
+            return true;
+        } catch (SQLException e) {
+            LOG.warn("schema.logPartitions", "Could not partition habit_logs: " + e.getMessage());
+            return false;
+        }
+    }
+    private String findPartitioningBlocker(Connection conn) throws SQLException {
+        String sql = "SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS "
+                + "WHERE CONSTRAINT_SCHEMA = DATABASE() AND (TABLE_NAME = 'habit_logs' OR REFERENCED_TABLE_NAME = 'habit_logs')";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                return "foreign key " + rs.getString(1) + " involves habit_logs";
+            }
+        }
+        HashMap<String, Set<String>> uniqueKeys = new HashMap<>();
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, "habit_logs", true, false)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String columnName = rs.getString("COLUMN_NAME");
+                if (indexName != null && columnName != null && !"PRIMARY".equalsIgnoreCase(indexName)) {
+                    uniqueKeys.computeIfAbsent(indexName, k -> new HashSet<>()).add(columnName.toLowerCase());
+                }
+            }
+        }
+        for (Map.Entry<String, Set<String>> key : uniqueKeys.entrySet()) {
+            if (!key.getValue().contains("date")) {
+                return "unique key " + key.getKey() + " does not include date";
+            }
+        }
+        return null;
+    }
+    private static boolean hasRows(Connection conn, String source) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + source + " LIMIT 1")) {
+            return rs.next();
+        }
+    }
+    private static String partitionClause(String name, LocalDate upperBound) {
+        return "PARTITION " + name + " VALUES LESS THAN (TO_DAYS('" + upperBound + "'))";
+    }
+    private boolean primaryKeyIncludes(Connection conn, String table, String column) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getPrimaryKeys(conn.getCatalog(), null, table)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
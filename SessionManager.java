@@ -0,0 +1,214 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+public class SessionManager {
+    private static final AsyncLogger LOG = AsyncLogger.get();
+    private static final int TOKEN_BYTES = 32;
+    private static final int FILE_MAGIC = 0x53455331;
+    private static final int EVICTION_SAMPLE = 16;
+    public static final int DEFAULT_MAX_SESSIONS = 10000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    private static SessionManager shared;
+    private final ConcurrentHashMap<String, Session> sessions;
+    private final int maxSessions;
+    private final long idleTimeoutMillis;
+    private Path persistFile;
+    public SessionManager(int maxSessions, long idleTimeoutMillis, Path persistFile) {
+        this.sessions = new ConcurrentHashMap<>();
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.persistFile = persistFile;
+        if (persistFile != null) {
+            load();
+        }
+    }
+    public static synchronized SessionManager getShared() {
+        if (shared == null) {
+            shared = new SessionManager(DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT_MILLIS, null);
+        }
+        return shared;
+    }
+    public synchronized Path getPersistFile() {
+        return persistFile;
+    }
+    public synchronized void setPersistFile(Path persistFile) {
+        if (persistFile == null ? this.persistFile == null : persistFile.equals(this.persistFile)) {
+            return;
+        }
+        this.persistFile = persistFile;
+        if (persistFile != null) {
+            load();
+            persist();
+        }
+    }
+    public static void createPrivateFile(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+            file.toFile().setReadable(false, false);
+            file.toFile().setReadable(true, true);
+            file.toFile().setWritable(false, false);
+            file.toFile().setWritable(true, true);
+        }
+    }
+    public int getSessionCount() {
+        return sessions.size();
+    }
+    public String createSession(User user) {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(tokenBytes);
+        String token = HexCodec.encode(tokenBytes);
+        if (sessions.size() >= maxSessions) {
+            evict();
+        }
+        sessions.put(keyOf(token), new Session(user, System.currentTimeMillis() + idleTimeoutMillis));
+        persist();
+        return token;
+    }
+    public User authenticate(String token) {
+        if (token == null || token.length() != TOKEN_BYTES * 2) {
+            return null;
+        }
+        String key = keyOf(token);
+        Session session = sessions.get(key);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.expiresAt < now) {
+            sessions.remove(key, session);
+            return null;
+        }
+        session.expiresAt = now + idleTimeoutMillis;
+        return session.user;
+    }
+    public void invalidate(String token) {
+        if (token != null && sessions.remove(keyOf(token)) != null) {
+            persist();
+        }
+    }
+    public void invalidateUser(int userId) {
+        if (sessions.values().removeIf(session -> session.user.getId() == userId)) {
+            persist();
+        }
+    }
+    private void evict() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAt < now);
+        while (sessions.size() >= maxSessions) {
+            String oldestKey = null;
+            long oldestExpiry = Long.MAX_VALUE;
+            Iterator<Map.Entry<String, Session>> it = sessions.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE && it.hasNext(); i++) {
+                Map.Entry<String, Session> entry = it.next();
+                if (entry.getValue().expiresAt < oldestExpiry) {
+                    oldestExpiry = entry.getValue().expiresAt;
+                    oldestKey = entry.getKey();
+                }
+            }
+            if (oldestKey == null) {
+                break;
+            }
+            sessions.remove(oldestKey);
+        }
+    }
+    private static String keyOf(String token) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return HexCodec.encode(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+    private synchronized void persist() {
+        if (persistFile == null) {
+            return;
+        }
+        Path tempFile = persistFile.resolveSibling(persistFile.getFileName() + ".tmp");
+        long now = System.currentTimeMillis();
+        try {
+            createPrivateFile(tempFile);
+        } catch (IOException e) {
+            LOG.error("session.persist", "Error creating session file", e, "file", tempFile);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FILE_MAGIC);
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                Session session = entry.getValue();
+                if (session.expiresAt < now) {
+                    continue;
+                }
+                out.writeBoolean(true);
+                out.writeUTF(entry.getKey());
+                out.writeLong(session.expiresAt);
+                out.writeInt(session.user.getId());
+                out.writeUTF(session.user.getName());
+                out.writeUTF(session.user.getUsername());
+                out.writeUTF(session.user.getEmail());
+            }
+            out.writeBoolean(false);
+        } catch (IOException e) {
+            LOG.error("session.persist", "Error saving sessions", e, "file", persistFile);
+            return;
+        }
+        try {
+            Files.move(tempFile, persistFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.error("session.persist", "Error replacing session file", e, "file", persistFile);
+        }
+    }
+    private synchronized void load() {
+        if (!Files.isRegularFile(persistFile)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(persistFile)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return;
+            }
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                long expiresAt = in.readLong();
+                User user = new User(in.readInt(), in.readUTF(), in.readUTF(), in.readUTF());
+                if (expiresAt >= now && sessions.size() < maxSessions) {
+                    sessions.put(key, new Session(user, expiresAt));
+                }
+            }
+            LOG.info("session.load", "Restored sessions", "sessions", sessions.size());
+        } catch (EOFException e) {
+            LOG.warn("session.load", "Session file is truncated", "sessions", sessions.size());
+        } catch (IOException e) {
+            LOG.error("session.load", "Error loading sessions", e, "file", persistFile);
+        }
+    }
+    private static class Session {
+        private final User user;
+        private volatile long expiresAt;
+        private Session(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
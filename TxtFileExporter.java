@@ -1,10 +1,15 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.util.Map;
 import java.util.TreeMap;
 public class TxtFileExporter implements IFileExporter {
+    private static final AsyncLogger LOG = AsyncLogger.get();
     private String outputFileName;
     public TxtFileExporter(String outputFileName) {
         this.outputFileName = outputFileName;
@@ -18,13 +23,7 @@ public class TxtFileExporter implements IFileExporter {
     @Override
     public void export(String habitName, Map<LocalDate, Boolean> logs) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(outputFileName))) {
-            writer.println("===========================================");
-            writer.println("       HABIT TRACKER REPORT");
-            writer.println("===========================================");
-            writer.println("Habit: " + habitName);
-            writer.println("Generated: " + LocalDate.now());
-            writer.println("===========================================");
-            writer.println();
+            writeHeader(writer, habitName);
             TreeMap<LocalDate, Boolean> sortedLogs = new TreeMap<>(logs);
             int totalDays = sortedLogs.size();
             int completedDays = 0;
@@ -37,20 +36,62 @@ public class TxtFileExporter implements IFileExporter {
                     completedDays++;
                 }
             }
+            writeSummary(writer, totalDays, completedDays);
+            LOG.info("export.txt", "Report exported successfully", "habit", habitName, "file", outputFileName, "days", totalDays);
+        } catch (IOException e) {
+            LOG.error("export.txt", "Error exporting report", e, "habit", habitName, "file", outputFileName);
+        }
+    }
+    public DbResult<Long> export(String habitName, int habitId, DatabaseManager dbManager) throws IOException {
+        Path outputFile = Paths.get(outputFileName);
+        Path tempFile = outputFile.resolveSibling(outputFile.getFileName() + ".tmp");
+        long[] completedDays = new long[1];
+        DbResult<Long> result;
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tempFile))) {
+            writeHeader(writer, habitName);
+            writer.println("Daily Log:");
             writer.println("-------------------------------------------");
-            writer.println();
-            writer.println("Summary:");
-            writer.println("Total Days Tracked: " + totalDays);
-            writer.println("Days Completed: " + completedDays);
-            writer.println("Days Missed: " + (totalDays - completedDays));
-            if (totalDays > 0) {
-                double percentage = (completedDays * 100.0) / totalDays;
-                writer.println("Completion Rate: " + String.format("%.1f", percentage) + "%");
+            result = dbManager.streamLogsForHabit(habitId, (epochDay, completed) -> {
+                writer.println(LocalDate.ofEpochDay(epochDay) + " - " + (completed ? "[X] Completed" : "[ ] Not Completed"));
+                if (completed) {
+                    completedDays[0]++;
+                }
+            });
+            if (result.isOk()) {
+                writeSummary(writer, result.getValue(), completedDays[0]);
             }
-            writer.println("===========================================");
-            System.out.println("Report exported successfully to " + outputFileName);
-        } catch (IOException e) {
-            System.err.println("Error exporting report: " + e.getMessage());
+            if (writer.checkError()) {
+                throw new IOException("Error writing " + tempFile);
+            }
+        }
+        if (!result.isOk()) {
+            Files.deleteIfExists(tempFile);
+            return result;
+        }
+        Files.move(tempFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+        LOG.info("export.txt", "Report exported successfully", "habit", habitName, "file", outputFileName, "days", result.getValue());
+        return result;
+    }
+    private static void writeHeader(PrintWriter writer, String habitName) {
+        writer.println("===========================================");
+        writer.println("       HABIT TRACKER REPORT");
+        writer.println("===========================================");
+        writer.println("Habit: " + habitName);
+        writer.println("Generated: " + LocalDate.now());
+        writer.println("===========================================");
+        writer.println();
+    }
+    private static void writeSummary(PrintWriter writer, long totalDays, long completedDays) {
+        writer.println("-------------------------------------------");
+        writer.println();
+        writer.println("Summary:");
+        writer.println("Total Days Tracked: " + totalDays);
+        writer.println("Days Completed: " + completedDays);
+        writer.println("Days Missed: " + (totalDays - completedDays));
+        if (totalDays > 0) {
+            double percentage = (completedDays * 100.0) / totalDays;
+            writer.println("Completion Rate: " + String.format("%.1f", percentage) + "%");
         }
+        writer.println("===========================================");
     }
 }
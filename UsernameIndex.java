@@ -0,0 +1,61 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+public class UsernameIndex {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long MIN_CAPACITY = 10000;
+    private volatile BloomFilter filter;
+    private volatile boolean ready;
+    private BloomFilter building;
+    private final AtomicLong size;
+    private long capacity;
+    public UsernameIndex() {
+        this.capacity = MIN_CAPACITY;
+        this.filter = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+        this.size = new AtomicLong();
+    }
+    public boolean isReady() {
+        return ready;
+    }
+    public long getSize() {
+        return size.get();
+    }
+    public synchronized boolean isSaturated() {
+        return size.get() > capacity;
+    }
+    public boolean mightExist(String username) {
+        return !ready || filter.mightContain(normalize(username));
+    }
+    public synchronized void add(String username) {
+        String key = normalize(username);
+        filter.add(key);
+        if (building != null) {
+            building.add(key);
+        }
+        size.incrementAndGet();
+    }
+    public synchronized BloomFilter beginRebuild(long expectedUsers) {
+        capacity = Math.max(MIN_CAPACITY, expectedUsers * 2);
+        building = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+        return building;
+    }
+    public void addToRebuild(BloomFilter target, String username) {
+        target.add(normalize(username));
+    }
+    public synchronized void finishRebuild(BloomFilter target, long loadedUsers) {
+        if (building != target) {
+            return;
+        }
+        filter = target;
+        building = null;
+        size.set(loadedUsers);
+        ready = true;
+    }
+    public synchronized void abortRebuild(BloomFilter target) {
+        if (building == target) {
+            building = null;
+        }
+    }
+    private static String normalize(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+}